@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.jte;
+
+import java.io.File;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import javax.tools.ToolProvider;
+import kotlin.jvm.JvmClassMappingKt;
+import kotlin.reflect.KCallable;
+import kotlin.reflect.KFunction;
+import kotlin.reflect.KType;
+
+/**
+ * Checks {@link KotlinTypes#fromJava} against the Kotlin compiler's own view of each Java type.
+ * Every type in the corpus is compiled into a field (or a varargs parameter) of a Java class,
+ * which kotlin-reflect then reports as a Kotlin type. Those are platform types, e.g.
+ * `kotlin.collections.(Mutable)List<kotlin.String!>!`, so both sides are compared with the
+ * platform and package noise removed.
+ */
+public class KotlinTypesDifferential {
+	/**
+	 * kotlin-reflect only sees runtime annotations, so the corpus uses a stand-in for
+	 * `androidx.annotation.Nullable`, one of the names Kotlin recognizes, with runtime retention.
+	 */
+	private static final String NULLABLE = "@androidx.annotation.Nullable ";
+	private static final String NULLABLE_SOURCE = "package androidx.annotation;\n"
+			+ "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+			+ "public @interface Nullable {}\n";
+
+	/** Only JDK types, so that javac can resolve every one of them. */
+	private static final List<String> TYPES = List.of(
+			"boolean", "byte", "short", "int", "long", "char", "float", "double",
+			"Boolean", "Byte", "Short", "Integer", "Long", "Character", "Float", "Double",
+			"java.lang.Integer", "String", "java.lang.String", "Object", "java.lang.Object",
+			"CharSequence", "Number", "Comparable<String>", "Comparable<? super String>", "Iterable<Integer>",
+			"Throwable", "java.lang.Throwable", "Enum<?>", "java.lang.Enum<?>", "Cloneable", "java.lang.Cloneable",
+			"java.lang.annotation.Annotation", "java.util.Collection<Long>", "java.util.List<String>", "java.util.Set<Character>",
+			"java.util.Map<String, Integer>", "java.util.Map.Entry<String, Double>", "java.util.Iterator<String>",
+			"java.util.ListIterator<String>", "java.util.Optional<String>", "java.time.LocalDate",
+			"int[]", "int[][]", "String[]", "String[][]", "java.util.List<int[]>", "Integer[]",
+			"java.util.Map<String, ? extends java.util.List<Integer>>[]",
+			"java.util.List<? super Integer>", "java.util.List<? extends Number>", "java.util.List<?>",
+			"java.util.Map<?, ? extends Number>", "java.util.Map<? super String, ? super Number>",
+			"java.util.Map<? extends String, ? extends Number>", "java.util.Map.Entry<? extends String, ? super Number>",
+			"java.util.Collection<? super Long>", "Iterable<? extends CharSequence>", "java.util.Iterator<? super Integer>",
+			"java.util.Set<? extends java.util.List<? super Integer>>",
+			"java.util.List<java.util.Map<String, java.util.Set<Long>>>",
+			NULLABLE + "String", NULLABLE + "java.util.List<String>", NULLABLE + "Integer",
+			"String...", "int...", "java.util.List<String>...");
+
+	public static void main(String[] args) throws Exception {
+		var dir = Files.createTempDirectory("kotlin-types");
+		var source = new StringBuilder("public class Types {\n");
+		for (int i = 0; i < TYPES.size(); ++i) {
+			var type = TYPES.get(i);
+			if (type.endsWith("...")) {
+				source.append("  public void member").append(i).append('(').append(type).append(" value) {}\n");
+			} else {
+				source.append("  public ").append(type).append(" member").append(i).append(";\n");
+			}
+		}
+		source.append("}\n");
+		var file = dir.resolve("Types.java");
+		Files.writeString(file, source);
+		var nullableFile = dir.resolve("Nullable.java");
+		Files.writeString(nullableFile, NULLABLE_SOURCE);
+		int exitCode = ToolProvider.getSystemJavaCompiler().run(null, null, null, "-proc:none",
+				"-classpath", System.getProperty("java.class.path"), "-d", dir.toString(), file.toString(), nullableFile.toString());
+		if (exitCode != 0) {
+			throw new AssertionError("javac failed on:\n" + source);
+		}
+
+		var mismatches = new ArrayList<String>();
+		try (var classLoader = new URLClassLoader(new java.net.URL[]{dir.toUri().toURL()}, KotlinTypesDifferential.class.getClassLoader())) {
+			var members = JvmClassMappingKt.getKotlinClass(classLoader.loadClass("Types")).getMembers();
+			for (int i = 0; i < TYPES.size(); ++i) {
+				var type = TYPES.get(i);
+				var name = "member" + i;
+				KCallable<?> member = members.stream().filter(m -> m.getName().equals(name)).findFirst().orElseThrow();
+				KType kotlinType = member instanceof KFunction ? member.getParameters().get(1).getType() : member.getReturnType();
+				var expected = normalize(kotlinType.toString());
+				var actual = normalize(KotlinTypes.fromJava(type));
+				if (!expected.equals(actual)) {
+					mismatches.add(type + "\n  KotlinTypes: " + KotlinTypes.fromJava(type) + "\n  Kotlin:      " + kotlinType);
+				}
+			}
+		} finally {
+			try (var paths = Files.walk(dir)) {
+				paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+			}
+		}
+		if (!mismatches.isEmpty()) {
+			throw new AssertionError(mismatches.size() + " types where KotlinTypes disagrees with Kotlin:\n" + String.join("\n", mismatches));
+		}
+		System.out.println("KotlinTypes agrees with Kotlin on all " + TYPES.size() + " types");
+	}
+
+	/**
+	 * Drops what only a platform type has (`!`, `(Mutable)`, `(out)`), and the `kotlin` packages, which are
+	 * imported by default. A flexible type like `(MutableList<in Int>..List<*>?)` becomes its upper bound,
+	 * unless that lost a projection which the lower bound kept, which is what a Kotlin declaration needs.
+	 */
+	private static String normalize(String type) {
+		type = type.replace("!", "")
+				.replace("(Mutable)", "")
+				.replace("(out) ", "")
+				.replaceAll("\\bkotlin\\.collections\\.", "")
+				.replaceAll("\\bkotlin\\.", "");
+		int open = type.indexOf('(');
+		while (open != -1) {
+			int depth = 0;
+			int close = open;
+			int range = -1;
+			do {
+				char c = type.charAt(close);
+				if (c == '(') {
+					++depth;
+				} else if (c == ')') {
+					--depth;
+				} else if (depth == 1 && type.startsWith("..", close)) {
+					range = close;
+				}
+				++close;
+			} while (depth > 0);
+			String lower = normalize(type.substring(open + 1, range));
+			String upper = normalize(type.substring(range + 2, close - 1));
+			if (upper.endsWith("?") && !lower.endsWith("?")) {
+				upper = upper.substring(0, upper.length() - 1);
+			}
+			String bound = upper.contains("*") && !lower.contains("*") ? lower : upper;
+			type = type.substring(0, open) + bound + type.substring(close);
+			open = type.indexOf('(');
+		}
+		return type;
+	}
+}
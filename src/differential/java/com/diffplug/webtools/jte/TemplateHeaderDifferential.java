@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.jte;
+
+import gg.jte.ContentType;
+import gg.jte.TemplateConfig;
+import gg.jte.compiler.TemplateParser;
+import gg.jte.compiler.TemplateParserVisitorAdapter;
+import gg.jte.compiler.TemplateType;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks {@link TemplateHeaderScanner} against jte's own `TemplateParser`: whenever the
+ * scanner accepts a header, it must report the same imports and params in the same order.
+ * The corpus is a fixed list of layouts plus a seeded shuffle of header and body fragments,
+ * so a failure always reproduces.
+ */
+public class TemplateHeaderDifferential {
+	/** Whole templates, including the layouts which the scanner is meant to hand over to the parser. */
+	private static final List<String> TEMPLATES = List.of(
+			"@import java.util.List\n@param List<String> names\n<p>${names.size()}</p>\n",
+			"@param String title\n@param int count = 5\n${title} ${count}\n",
+			"<%-- the page for a user --%>\n@import com.example.User\n@param User user\n${user}\n",
+			"@param String... names\n@for(var name : names)${name}@endfor\n",
+			"@param java.util.Map<String, java.util.List<Integer>> map\n${map}\n",
+			"@import static java.lang.Math.max\n@param int a\n${max(a, 1)}\n",
+			"@param name: String\n@param count: Int = 0\n${name}\n",
+			"\n\n   @param String indented\n${indented}\n",
+			"@param String crlf\r\n${crlf}\r\n",
+			"@param\tString tabbed\n${tabbed}\n",
+			"@param @Nullable String maybe\n${maybe}\n",
+			"<!-- html comment -->\n@param String afterHtml\n${afterHtml}\n",
+			"<p>body</p>\n<%-- a late comment --%>\n@param String late\n${late}\n",
+			"@param String unterminated",
+			"@param String ok\n<%-- unterminated comment\n",
+			"@template.layout.page(content = @`<p>hi</p>`)\n",
+			"@param String a\n@template.layout.page(title = a)\n@template.partials.footer()\n<%-- @template.commented.out() --%>\n");
+
+	/** Pieces of headers and bodies, which the fuzzer strings together. */
+	private static final List<String> FRAGMENTS = List.of(
+			"@import java.util.List\n",
+			"@import static java.lang.Math.max\n",
+			"@import java.util.*\n",
+			"@param String name\n",
+			"@param java.util.Map<String, java.util.List<Integer>> map\n",
+			"@param int count = 5\n",
+			"@param String... names\n",
+			"@param name: String\n",
+			"@param   String spaced  \n",
+			"@param\tString tabbed\n",
+			"@param String crlf\r\n",
+			"@param @Nullable String x\n",
+			"@param String noNewline",
+			"<%-- comment --%>\n",
+			"<%-- multi\nline --%>",
+			"<%-- c --%>@param String afterComment\n",
+			"<!-- html -->\n",
+			"\n",
+			"   ",
+			"\t",
+			"\r\n",
+			"<p>body</p>\n",
+			"${name}\n",
+			"@if(true)\nyes\n@endif\n",
+			"@template.layout.page(name = \"x\")\n");
+
+	private static final int FUZZ_TEMPLATES = 5_000;
+
+	public static void main(String[] args) {
+		var templates = new ArrayList<>(TEMPLATES);
+		var random = new Random(20251017);
+		for (int i = 0; i < FUZZ_TEMPLATES; ++i) {
+			var builder = new StringBuilder();
+			for (int fragments = 1 + random.nextInt(8); fragments > 0; --fragments) {
+				builder.append(FRAGMENTS.get(random.nextInt(FRAGMENTS.size())));
+			}
+			templates.add(builder.toString());
+		}
+		var mismatches = new ArrayList<String>();
+		int accepted = 0;
+		for (var contentType : ContentType.values()) {
+			var config = new TemplateConfig(contentType, "gg.jte.generated");
+			for (var template : templates) {
+				var scanned = new Recorder();
+				if (!TemplateHeaderScanner.scan(template, scanned)) {
+					continue;
+				}
+				++accepted;
+				var parsed = new Recorder();
+				try {
+					new TemplateParser(template, TemplateType.Template, parsed, config).parse();
+				} catch (RuntimeException e) {
+					// a broken body, the header events before it still count
+				}
+				if (!scanned.header.equals(parsed.header)) {
+					mismatches.add(contentType + " " + escape(template) + "\n  scanner: " + scanned.header + "\n  parser:  " + parsed.header);
+				}
+			}
+		}
+		// the call scan is plain text, so it is only held to the fixed corpus, which has no calls inside strings
+		for (var template : TEMPLATES) {
+			var parsed = new Recorder();
+			new TemplateParser(template, TemplateType.Template, parsed, new TemplateConfig(ContentType.Html, "gg.jte.generated")).parse();
+			var scanned = TemplateHeaderScanner.templateCalls(template);
+			if (!scanned.equals(new ArrayList<>(parsed.calls))) {
+				mismatches.add("calls in " + escape(template) + "\n  scanner: " + scanned + "\n  parser:  " + parsed.calls);
+			}
+		}
+		if (!mismatches.isEmpty()) {
+			throw new AssertionError(mismatches.size() + " templates where TemplateHeaderScanner disagrees with TemplateParser:\n" + String.join("\n", mismatches));
+		}
+		System.out.println("TemplateHeaderScanner agrees with TemplateParser on all " + accepted + " headers it accepted, out of " + templates.size() * ContentType.values().length);
+	}
+
+	private static class Recorder extends TemplateParserVisitorAdapter {
+		final List<String> header = new ArrayList<>();
+		final LinkedHashSet<String> calls = new LinkedHashSet<>();
+
+		@Override
+		public void onImport(String importClass) {
+			header.add("import " + importClass);
+		}
+
+		@Override
+		public void onParam(String parameter) {
+			header.add("param " + parameter);
+		}
+
+		@Override
+		public void onTemplateCall(int depth, String name, List<String> params) {
+			calls.add(name);
+		}
+	}
+
+	private static String escape(String template) {
+		return '"' + template.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t") + '"';
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.eclipse.jetty.http.QuotedCSV;
+import org.eclipse.jetty.http.QuotedQualityCSV;
+
+/**
+ * Checks {@link AssetCache.Encoding#acceptable} against Jetty's own `Accept-Encoding` parsing,
+ * `QuotedCSV` for which codings are named and `QuotedQualityCSV` for which of them have a
+ * non-zero weight. Jetty also accepts some weights which RFC 9110 doesn't, e.g. `q=-1` and an
+ * uppercase `Q=`, so the corpus sticks to valid weights, along with quoted parameters, odd
+ * whitespace and empty list elements. It is a seeded shuffle, so a failure always reproduces.
+ */
+public class AcceptEncodingDifferential {
+	/** Whole headers, e.g. as sent by browsers and curl. */
+	private static final List<String> HEADERS = Arrays.asList(
+			null,
+			"",
+			"gzip, deflate, br",
+			"gzip, deflate, br, zstd",
+			"br;q=1.0, gzip;q=0.8, *;q=0.1",
+			"identity",
+			"identity;q=0",
+			"*",
+			"*;q=0",
+			"*;q=0, identity",
+			"*;q=0, gzip",
+			"gzip;q=0, *",
+			"x-gzip",
+			"deflate",
+			"GZIP, Br",
+			"br;foo=\"a,b\";q=0, gzip",
+			"br;foo=\"x;q=0\"",
+			"gzip ;q=0",
+			"gzip; q=0",
+			" , gzip,, ",
+			"gzip;q=0, gzip",
+			"gzip, x-gzip;q=0");
+
+	private static final List<String> CODINGS = List.of("br", "gzip", "x-gzip", "identity", "*", "deflate", "zstd", "BR", "Gzip");
+	private static final List<String> PARAMS = List.of(
+			"", "", "",
+			";q=0", ";q=1", ";q=0.5", ";q=0.000", ";q=1.000", ";q=0.001", ";q=0.",
+			" ;q=0", "; q=0", " ; q=0.5",
+			";level=1;q=0", ";q=0;level=1",
+			";foo=\"a,b\";q=0", ";foo=\"x;q=0\"", ";foo=\"a\\\"b\"");
+	private static final List<String> SEPARATORS = List.of(",", ", ", " ,", " , ", ",,", ", ,");
+
+	private static final int FUZZ_HEADERS = 20_000;
+
+	public static void main(String[] args) {
+		var headers = new ArrayList<>(HEADERS);
+		var random = new Random(20251017);
+		for (int i = 0; i < FUZZ_HEADERS; ++i) {
+			var builder = new StringBuilder();
+			for (int codings = 1 + random.nextInt(5); codings > 0; --codings) {
+				if (builder.length() > 0) {
+					builder.append(SEPARATORS.get(random.nextInt(SEPARATORS.size())));
+				}
+				builder.append(CODINGS.get(random.nextInt(CODINGS.size())));
+				builder.append(PARAMS.get(random.nextInt(PARAMS.size())));
+			}
+			headers.add(builder.toString());
+		}
+		var mismatches = new ArrayList<String>();
+		for (var header : headers) {
+			var expected = Arrays.asList(reference(header));
+			var actual = Arrays.asList(AssetCache.Encoding.acceptable(header));
+			if (!expected.equals(actual)) {
+				mismatches.add((header == null ? "null" : "'" + header + "'") + "\n  jetty:      " + expected + "\n  AssetCache: " + actual);
+			}
+		}
+		if (!mismatches.isEmpty()) {
+			throw new AssertionError(mismatches.size() + " headers where AssetCache and Jetty disagree:\n" + String.join("\n", mismatches));
+		}
+		System.out.println("AssetCache agrees with Jetty on all " + headers.size() + " headers");
+	}
+
+	/** The acceptable encodings as Jetty parses the header, in the server's order of preference. */
+	private static AssetCache.Encoding[] reference(String header) {
+		var named = new QuotedCSV();
+		var weighted = new QuotedQualityCSV();
+		if (header != null) {
+			named.addValue(header);
+			weighted.addValue(header);
+		}
+		if (named.isEmpty()) {
+			return new AssetCache.Encoding[]{AssetCache.Encoding.IDENTITY};
+		}
+		Boolean br = accepts(named, weighted, "br");
+		Boolean gzip = accepts(named, weighted, "gzip", "x-gzip");
+		Boolean identity = accepts(named, weighted, "identity");
+		Boolean star = accepts(named, weighted, "*");
+		// RFC 9110 section 12.5.3, codings which aren't named fall back to `*`, and identity is acceptable unless excluded
+		boolean starAllowed = Boolean.TRUE.equals(star);
+		return Stream.of(
+				(br != null ? br : starAllowed) ? AssetCache.Encoding.BROTLI : null,
+				(gzip != null ? gzip : starAllowed) ? AssetCache.Encoding.GZIP : null,
+				(identity != null ? identity : star == null || starAllowed) ? AssetCache.Encoding.IDENTITY : null)
+				.filter(e -> e != null)
+				.toArray(AssetCache.Encoding[]::new);
+	}
+
+	/** True if any of the codings has a non-zero weight, false if they are only named with a zero weight, null if they aren't named. */
+	private static Boolean accepts(QuotedCSV named, QuotedQualityCSV weighted, String... codings) {
+		var names = List.of(codings);
+		if (weighted.getValues().stream().anyMatch(value -> names.contains(coding(value)))) {
+			return true;
+		}
+		return named.getValues().stream().anyMatch(value -> names.contains(coding(value))) ? false : null;
+	}
+
+	private static String coding(String value) {
+		int semicolon = value.indexOf(';');
+		return (semicolon == -1 ? value : value.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+	}
+}
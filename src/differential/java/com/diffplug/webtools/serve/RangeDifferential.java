@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.eclipse.jetty.server.InclusiveByteRange;
+
+/**
+ * Checks {@link ZeroCopy#parseRange} against Jetty's `InclusiveByteRange`. The two differ
+ * on purpose where RFC 9110 leaves a choice: Jetty answers a malformed header with a 416,
+ * and coalesces several ranges into a multipart response, while `ZeroCopy` ignores both and
+ * sends the whole file. So Jetty is only asked about headers with a single valid range, and
+ * every other header must be ignored. The corpus is a seeded shuffle, so a failure always
+ * reproduces.
+ */
+public class RangeDifferential {
+	/** Whole headers, sent against each of {@link #SIZES}. */
+	private static final List<String> HEADERS = List.of(
+			"bytes=0-9",
+			"bytes=0-0",
+			"bytes=-5",
+			"bytes=-0",
+			"bytes=5-",
+			"bytes=0-",
+			"bytes=49-49",
+			"bytes=50-50",
+			"bytes=40-100",
+			"bytes=-100",
+			"bytes=100-",
+			"bytes=100-50",
+			"bytes=5-2",
+			"bytes= 0 - 9 ",
+			"bytes=0-9,",
+			"bytes=,0-9",
+			"bytes=0-9, 20-29",
+			"bytes=0-5,3-10",
+			"bytes=",
+			"bytes=-",
+			"bytes=abc",
+			"bytes=+1-5",
+			"bytes=1--5",
+			"bytes=0x1-5",
+			"BYTES=0-9",
+			"items=0-9");
+	private static final long[] SIZES = {0, 1, 50, 1000};
+
+	private static final List<String> PREFIXES = List.of("bytes=", "bytes=", "bytes=", "bytes= ", "BYTES=", "items=");
+	private static final List<String> SEPARATORS = List.of(",", ", ", " ,", ",,");
+	private static final long[] NUMBERS = {0, 1, 5, 49, 50, 51, 100, 999, 1000, 1001, 123_456_789_012L};
+
+	/** A single valid `byte-range-spec`, with Jetty's leniency about whitespace around the dash. */
+	private static final Pattern RANGE_SPEC = Pattern.compile("(?:([0-9]+)\\s*-\\s*([0-9]*)|-\\s*[0-9]+)");
+
+	private static final int FUZZ_HEADERS = 20_000;
+
+	public static void main(String[] args) {
+		var headers = new ArrayList<>(HEADERS);
+		var random = new Random(20251017);
+		for (int i = 0; i < FUZZ_HEADERS; ++i) {
+			var builder = new StringBuilder(PREFIXES.get(random.nextInt(PREFIXES.size())));
+			for (int specs = 1 + random.nextInt(random.nextInt(4) == 0 ? 3 : 1); specs > 0; --specs) {
+				builder.append(spec(random));
+				if (specs > 1) {
+					builder.append(SEPARATORS.get(random.nextInt(SEPARATORS.size())));
+				}
+			}
+			headers.add(builder.toString());
+		}
+		var mismatches = new ArrayList<String>();
+		int checks = 0;
+		for (var header : headers) {
+			for (long size : SIZES) {
+				++checks;
+				String expected = describe(reference(header, size));
+				String actual = describe(ZeroCopy.parseRange(header, size));
+				if (!expected.equals(actual)) {
+					mismatches.add("'" + header + "' of " + size + " bytes\n  expected: " + expected + "\n  ZeroCopy: " + actual);
+				}
+			}
+		}
+		if (!mismatches.isEmpty()) {
+			throw new AssertionError(mismatches.size() + " ranges where ZeroCopy and Jetty disagree:\n" + String.join("\n", mismatches));
+		}
+		System.out.println("ZeroCopy agrees with Jetty on all " + checks + " ranges");
+	}
+
+	private static String spec(Random random) {
+		long first = NUMBERS[random.nextInt(NUMBERS.length)];
+		long last = NUMBERS[random.nextInt(NUMBERS.length)];
+		switch (random.nextInt(10)) {
+		case 0:
+			return first + "-";
+		case 1:
+			return "-" + last;
+		case 2:
+			return " " + first + " - " + last + " ";
+		case 3:
+			return "+" + first + "-" + last;
+		case 4:
+			return first + "--" + last;
+		case 5:
+			return random.nextBoolean() ? "" : "-";
+		default:
+			return first + "-" + last;
+		}
+	}
+
+	/** What `parseRange` should return: Jetty's range for a single valid range, otherwise null to ignore the header. */
+	private static long[] reference(String header, long size) {
+		if (!header.startsWith("bytes=")) {
+			return null;
+		}
+		var specs = new ArrayList<String>();
+		for (String element : header.substring("bytes=".length()).split(",")) {
+			if (!element.isBlank()) {
+				specs.add(element.trim());
+			}
+		}
+		if (specs.size() != 1) {
+			return null;
+		}
+		var matcher = RANGE_SPEC.matcher(specs.get(0));
+		if (!matcher.matches()) {
+			return null;
+		}
+		if (matcher.group(1) != null && !matcher.group(2).isEmpty() && Long.parseLong(matcher.group(2)) < Long.parseLong(matcher.group(1))) {
+			// an invalid byte-range-spec, RFC 9110 section 14.1.1
+			return null;
+		}
+		// Jetty doesn't skip empty list elements with whitespace in them, e.g. `bytes=0-9, `, so it only gets the range
+		List<InclusiveByteRange> ranges = InclusiveByteRange.satisfiableRanges(Collections.enumeration(List.of("bytes=" + specs.get(0))), size);
+		if (ranges == null || ranges.isEmpty()) {
+			return new long[0];
+		}
+		return new long[]{ranges.get(0).getFirst(), ranges.get(0).getLast()};
+	}
+
+	private static String describe(long[] range) {
+		return range == null ? "whole file" : range.length == 0 ? "unsatisfiable" : Arrays.toString(range);
+	}
+}
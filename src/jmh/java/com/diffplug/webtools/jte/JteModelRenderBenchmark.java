@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.jte;
+
+import gg.jte.ContentType;
+import gg.jte.TemplateEngine;
+import gg.jte.html.HtmlInterceptor;
+import gg.jte.html.HtmlTemplateOutput;
+import gg.jte.html.OwaspHtmlTemplateOutput;
+import gg.jte.output.StringOutput;
+import gg.jte.resolve.DirectoryCodeResolver;
+import gg.jte.runtime.ClassInfo;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The two shapes of `render` which `jteModels` can generate, against the same
+ * precompiled template: `engine.render(name, mapOf(...), output)`, and the
+ * `directRender` call straight into the template class. Run with `-prof gc`
+ * to see the allocations per render.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JteModelRenderBenchmark {
+	private static final String PACKAGE_NAME = "gg.jte.generated";
+	private static final String TEMPLATE = "pages/Page.jte";
+
+	private Path rootDir;
+	private Path classDir;
+	private URLClassLoader classLoader;
+	private TemplateEngine engine;
+	private MethodHandle render;
+	private final StringOutput output = new StringOutput(1024);
+	private final HtmlTemplateOutput htmlOutput = new OwaspHtmlTemplateOutput(output);
+
+	private final String title = "Hello";
+	/** Outside of the `Integer` cache, so that the map has to box it, the same as a Kotlin `Int`. */
+	private final int count = 1_000;
+	private final List<String> items = List.of("a", "b", "c");
+
+	@Setup(Level.Trial)
+	public void setup() throws Throwable {
+		rootDir = Files.createTempDirectory("jte-model-render-benchmark");
+		classDir = Files.createTempDirectory("jte-model-render-benchmark-classes");
+		Path template = rootDir.resolve(TEMPLATE);
+		Files.createDirectories(template.getParent());
+		Files.writeString(template, "@import java.util.List\n" +
+				"@param String title\n" +
+				"@param int count\n" +
+				"@param List<String> items\n" +
+				"<h1>${title}</h1>\n" +
+				"<p>${count}</p>\n" +
+				"@for(var item : items)<li>${item}</li>@endfor\n");
+		TemplateEngine.create(new DirectoryCodeResolver(rootDir), classDir, ContentType.Html, null, PACKAGE_NAME).precompileAll();
+
+		engine = TemplateEngine.createPrecompiled(classDir, ContentType.Html, null, PACKAGE_NAME);
+		classLoader = new URLClassLoader(new URL[]{classDir.toUri().toURL()}, getClass().getClassLoader());
+		Class<?> templateClass = classLoader.loadClass(new ClassInfo(TEMPLATE, PACKAGE_NAME).fullName);
+		render = MethodHandles.publicLookup().findStatic(templateClass, "render",
+				MethodType.methodType(void.class, HtmlTemplateOutput.class, HtmlInterceptor.class, String.class, int.class, List.class));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		classLoader.close();
+		for (Path dir : List.of(rootDir, classDir)) {
+			try (Stream<Path> paths = Files.walk(dir)) {
+				paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+			}
+		}
+	}
+
+	/** What a model renders to by default, Kotlin's `mapOf` allocates a `Pair` per param and a `LinkedHashMap`. */
+	@Benchmark
+	public void engineMap() {
+		output.reset();
+		engine.render(TEMPLATE, mapOf(
+				Map.<String, Object>entry("title", title),
+				Map.<String, Object>entry("count", count),
+				Map.<String, Object>entry("items", items)), output);
+	}
+
+	/** What a model renders to with `directRender = true`, given an `HtmlTemplateOutput`. */
+	@Benchmark
+	public void direct() throws Throwable {
+		output.reset();
+		render.invokeExact(htmlOutput, (HtmlInterceptor) null, title, count, items);
+	}
+
+	@SafeVarargs
+	private static Map<String, Object> mapOf(Map.Entry<String, Object>... pairs) {
+		Map<String, Object> map = new LinkedHashMap<>((int) (pairs.length / 0.75f) + 1);
+		for (Map.Entry<String, Object> pair : pairs) {
+			map.put(pair.getKey(), pair.getValue());
+		}
+		return map;
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.jte;
+
+import gg.jte.ContentType;
+import gg.jte.TemplateConfig;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Model classes per second from {@link JteRenderer}, over a synthetic
+ * tree of templates spread across nested packages, each with a handful of
+ * imports and a mix of `.jte` and `.kte` params.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JteRendererBenchmark {
+	@Param({"100", "1000"})
+	public int templates;
+
+	/** Number of `@param` lines in each template. */
+	@Param({"4", "16"})
+	public int params;
+
+	private Path rootDir;
+	private Path outputDir;
+	private JteRenderer renderer;
+	private List<File> files;
+	private TreeMap<File, File> templateToTarget;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		rootDir = Files.createTempDirectory("jte-renderer-benchmark");
+		files = new ArrayList<>(templates);
+		for (int i = 0; i < templates; ++i) {
+			// ten templates per package, ten packages per parent
+			Path dir = rootDir.resolve("pages").resolve("section" + (i / 100)).resolve("group" + (i / 10 % 10));
+			Files.createDirectories(dir);
+			boolean kotlin = i % 4 == 3;
+			Path file = dir.resolve("Page" + i + (kotlin ? ".kte" : ".jte"));
+			Files.writeString(file, template(kotlin, params));
+			files.add(file.toFile());
+		}
+		renderer = new JteRenderer(rootDir.toFile(), new TemplateConfig(ContentType.Html, "gg.jte.generated"));
+
+		outputDir = Files.createTempDirectory("jte-renderer-benchmark-output");
+		templateToTarget = new TreeMap<>();
+		for (File file : files) {
+			Path target = outputDir.resolve(rootDir.relativize(file.toPath()).toString().replace(".jte", ".kt").replace(".kte", ".kt"));
+			Files.createDirectories(target.getParent());
+			templateToTarget.put(file, target.toFile());
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		for (Path dir : List.of(rootDir, outputDir)) {
+			try (Stream<Path> paths = Files.walk(dir)) {
+				paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+			}
+		}
+	}
+
+	@Benchmark
+	public void renderAll(Blackhole blackhole) throws IOException {
+		for (File file : files) {
+			blackhole.consume(renderer.render(file));
+		}
+	}
+
+	/** Parses, renders and writes every template, the same as a single `jteModels` work item. */
+	@Benchmark
+	public void renderAndWriteAll() throws IOException {
+		renderer.renderAll(templateToTarget, Map.of());
+	}
+
+	private static String template(boolean kotlin, int params) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("@import java.util.List\n");
+		builder.append("@import java.util.Map\n");
+		builder.append("@import com.example.model.User\n");
+		for (int i = 0; i < params; ++i) {
+			if (kotlin) {
+				builder.append(i % 2 == 0 ? "@param items" + i + ": List<User>\n" : "@param flag" + i + ": Boolean\n");
+			} else {
+				builder.append(i % 2 == 0 ? "@param java.util.Map<String, List<User>> items" + i + "\n" : "@param boolean flag" + i + "\n");
+			}
+		}
+		builder.append("<html>\n<body>\n");
+		for (int i = 0; i < params; ++i) {
+			if (i % 2 == 0) {
+				builder.append(kotlin ? "@for(item in items" + i + ")\n" : "@for(var item : items" + i + ".keySet())\n");
+				builder.append("<p>${item}</p>\n@endfor\n");
+			} else {
+				builder.append("@if(flag" + i + ")\n<p>on</p>\n@endif\n");
+			}
+		}
+		builder.append("</body>\n</html>\n");
+		return builder.toString();
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.jte;
+
+import gg.jte.ContentType;
+import gg.jte.TemplateConfig;
+import gg.jte.compiler.TemplateParser;
+import gg.jte.compiler.TemplateParserVisitorAdapter;
+import gg.jte.compiler.TemplateType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Collecting the imports and params of one template with {@link TemplateHeaderScanner}
+ * versus the full `TemplateParser`, as the body grows. Everything is in memory, so
+ * this is purely the parsing cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplateHeaderBenchmark {
+	/** Approximate size of the html body, in kilobytes. */
+	@Param({"1", "16", "256"})
+	public int bodyKb;
+
+	private String template;
+	private TemplateConfig config;
+
+	@Setup
+	public void setup() {
+		var builder = new StringBuilder();
+		builder.append("@import java.util.List\n");
+		builder.append("@import com.example.model.User\n");
+		builder.append("<%-- the page for a single user --%>\n");
+		builder.append("@param User user\n");
+		builder.append("@param List<String> roles\n");
+		builder.append("@param boolean admin\n");
+		builder.append("<html>\n<body>\n");
+		while (builder.length() < bodyKb * 1024) {
+			builder.append("<div class=\"row\"><span>${user.getName()}</span>\n");
+			builder.append("@for(var role : roles)\n<li class=\"role\">${role}</li>\n@endfor\n");
+			builder.append("@if(admin)\n<a href=\"/admin\">admin</a>\n@endif\n</div>\n");
+		}
+		builder.append("</body>\n</html>\n");
+		template = builder.toString();
+		config = new TemplateConfig(ContentType.Html, "gg.jte.generated");
+	}
+
+	@Benchmark
+	public void fullParser(Blackhole blackhole) {
+		new TemplateParser(template, TemplateType.Template, visitor(blackhole), config).parse();
+	}
+
+	@Benchmark
+	public boolean headerScanner(Blackhole blackhole) {
+		return TemplateHeaderScanner.scan(template, visitor(blackhole));
+	}
+
+	private static TemplateParserVisitorAdapter visitor(Blackhole blackhole) {
+		return new TemplateParserVisitorAdapter() {
+			@Override
+			public void onImport(String importClass) {
+				blackhole.consume(importClass);
+			}
+
+			@Override
+			public void onParam(String parameter) {
+				blackhole.consume(parameter);
+			}
+		};
+	}
+}
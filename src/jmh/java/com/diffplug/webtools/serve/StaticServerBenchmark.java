@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Requests and responses per second, and their latency distribution, for
+ * {@link StaticServer} over a loopback HTTP client. Files are text-like so
+ * that they compress, and `encoding=gzip` asks for the compressed variant.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class StaticServerBenchmark {
+	private static final int SMALL = 4 * 1024;
+	private static final int LARGE = 4 * 1024 * 1024;
+
+	/** `default` is Jetty's DefaultServlet, `cache` is the in-memory precompressed cache. */
+	@Param({"default", "cache"})
+	public String mode;
+
+	@Param({"small", "large"})
+	public String size;
+
+	@Param({"identity", "gzip"})
+	public String encoding;
+
+	private Path dir;
+	private StaticServer server;
+	private HttpClient client;
+	private HttpRequest request;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		dir = Files.createTempDirectory("static-server-benchmark");
+		Files.write(dir.resolve("small.txt"), textLike(SMALL));
+		Files.write(dir.resolve("large.txt"), textLike(LARGE));
+
+		StaticServer.Config config = new StaticServer.Config();
+		config.port = freePort();
+		config.dir = dir.toFile();
+		config.cache = mode.equals("cache");
+		server = StaticServer.start(config);
+
+		client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + config.port + "/" + size + ".txt"))
+				.header("Accept-Encoding", encoding)
+				.build();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		server.stop();
+		try (Stream<Path> paths = Files.walk(dir)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public int throughput() throws IOException, InterruptedException {
+		return get();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public int latency() throws IOException, InterruptedException {
+		return get();
+	}
+
+	private int get() throws IOException, InterruptedException {
+		HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+		if (response.statusCode() != 200) {
+			throw new IllegalStateException("Unexpected status " + response.statusCode());
+		}
+		return response.body().length;
+	}
+
+	/** Words drawn from a small vocabulary, so that gzip gets a realistic ratio. */
+	private static byte[] textLike(int length) {
+		String[] words = {"the", "static", "server", "serves", "files", "from", "memory", "<div>", "</div>", "class=\"row\"", "function", "return", "\n"};
+		Random random = new Random(0);
+		StringBuilder builder = new StringBuilder(length + 16);
+		while (builder.length() < length) {
+			builder.append(words[random.nextInt(words.length)]).append(' ');
+		}
+		builder.setLength(length);
+		return builder.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
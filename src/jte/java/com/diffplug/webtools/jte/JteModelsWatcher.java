@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.jte;
+
+import com.diffplug.webtools.DirWatcher;
+import gg.jte.ContentType;
+import gg.jte.TemplateConfig;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+/**
+ * Keeps one {@link JteRenderer} warm, and re-renders the models of templates as
+ * they are saved, along with the index and registry. Picks up where `jteModels`
+ * left off, so the output dir and its index must already be up-to-date.
+ */
+public class JteModelsWatcher implements AutoCloseable {
+	private static final Logger LOGGER = Logging.getLogger(JteModelsWatcher.class);
+
+	private final File inputDir;
+	private final File outputDir;
+	private final String packageName;
+	private final JteRenderer renderer;
+	private final TreeMap<String, ModelIndex.Entry> index;
+	private final DirWatcher watcher;
+
+	public JteModelsWatcher(File inputDir, File outputDir, String packageName, String contentType, boolean directRender) throws IOException {
+		this.inputDir = inputDir.getAbsoluteFile();
+		this.outputDir = outputDir;
+		this.packageName = packageName;
+		this.renderer = new JteRenderer(this.inputDir, new TemplateConfig(ContentType.valueOf(contentType), packageName), directRender);
+		this.index = ModelIndex.read(new File(outputDir, ModelIndex.FILENAME));
+		this.watcher = new DirWatcher(this.inputDir.toPath(), this::onBatch);
+	}
+
+	/** Called on the watcher's thread, with files and directories which were created, modified or deleted. */
+	private void onBatch(Set<Path> changed) {
+		long start = System.nanoTime();
+		var toRender = new TreeMap<File, File>();
+		var removed = 0;
+		try {
+			for (var path : changed) {
+				if (Files.isDirectory(path)) {
+					// a new directory, or the whole tree if the OS dropped events
+					try (Stream<Path> paths = Files.walk(path)) {
+						paths.filter(JteModelsWatcher::isTemplate).forEach(template -> toRender.put(template.toFile(), target(template)));
+					}
+				} else if (isTemplate(path)) {
+					toRender.put(path.toFile(), target(path));
+				}
+			}
+			// drop the models of deleted templates and directories, and check everything if the OS dropped events
+			var gone = new ArrayList<String>();
+			for (var path : changed) {
+				if (!Files.exists(path)) {
+					gone.add(relativePath(path));
+				}
+			}
+			boolean checkAll = changed.contains(inputDir.toPath());
+			var iterator = index.entrySet().iterator();
+			while ((checkAll || !gone.isEmpty()) && iterator.hasNext()) {
+				var entry = iterator.next();
+				var templatePath = entry.getValue().templatePath;
+				boolean deleted = checkAll
+						? !new File(inputDir, templatePath).isFile()
+						: gone.stream().anyMatch(path -> templatePath.equals(path) || templatePath.startsWith(path + "/"));
+				if (deleted) {
+					Files.deleteIfExists(new File(outputDir, entry.getKey()).toPath());
+					iterator.remove();
+					++removed;
+				}
+			}
+			var knownHashes = new HashMap<File, String>();
+			for (var entry : toRender.entrySet()) {
+				var templatePath = relativePath(entry.getKey().toPath());
+				var known = index.get(JtePlugin.targetPath(templatePath));
+				if (known != null) {
+					knownHashes.put(entry.getValue(), known.hash);
+				}
+				Files.createDirectories(entry.getValue().getParentFile().toPath());
+			}
+			renderer.renderAll(toRender, knownHashes).forEach((target, entry) -> index.put(JtePlugin.targetPath(entry.templatePath), entry));
+			ModelIndex.writeWithRegistry(outputDir, packageName, index);
+		} catch (Exception e) {
+			LOGGER.error("jteModels failed", e);
+			return;
+		}
+		if (!toRender.isEmpty() || removed > 0) {
+			LOGGER.lifecycle("jteModels: rendered " + toRender.size() + ", removed " + removed + " in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+		}
+	}
+
+	private static boolean isTemplate(Path path) {
+		String name = path.getFileName().toString();
+		return (name.endsWith(".jte") || name.endsWith(".kte")) && Files.isRegularFile(path);
+	}
+
+	/** The template's path relative to the input dir, with `/` separators. */
+	private String relativePath(Path template) {
+		return inputDir.toPath().relativize(template).toString().replace(File.separatorChar, '/');
+	}
+
+	private File target(Path template) {
+		return new File(outputDir, JtePlugin.targetPath(relativePath(template)));
+	}
+
+	@Override
+	public void close() throws IOException {
+		watcher.close();
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.jte;
+
+import gg.jte.CodeResolver;
+import gg.jte.ContentType;
+import gg.jte.TemplateEngine;
+import gg.jte.html.HtmlPolicy;
+import gg.jte.resolve.DirectoryCodeResolver;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.gradle.workers.WorkAction;
+
+/** Precompiles one group of templates into its own class dir, inside the classloader-isolated worker that `jtePrecompile` submits to. */
+public abstract class JtePrecompileAction implements WorkAction<JtePlugin.PrecompileParameters> {
+	@Override
+	public void execute() {
+		var parameters = getParameters();
+		var resolver = new GroupCodeResolver(new DirectoryCodeResolver(parameters.getInputDir().get().getAsFile().toPath()), parameters.getTemplateNames().get());
+		var engine = TemplateEngine.create(resolver, parameters.getClassDir().get().getAsFile().toPath(),
+				ContentType.valueOf(parameters.getContentType().get()), null, parameters.getPackageName().get());
+		engine.setTrimControlStructures(parameters.getTrimControlStructures().get());
+		engine.setHtmlCommentsPreserved(parameters.getHtmlCommentsPreserved().get());
+		engine.setBinaryStaticContent(parameters.getBinaryStaticContent().get());
+		if (parameters.getHtmlTags().isPresent()) {
+			engine.setHtmlTags(parameters.getHtmlTags().get());
+		}
+		if (parameters.getCompileArgs().isPresent()) {
+			engine.setCompileArgs(parameters.getCompileArgs().get());
+		}
+		if (parameters.getKotlinCompileArgs().isPresent()) {
+			engine.setKotlinCompileArgs(parameters.getKotlinCompileArgs().get());
+		}
+		var compilePath = parameters.getCompilePath().getFiles();
+		// the policy is one of the project's own classes, jte's own classes still come from the worker
+		try (var policyLoader = new URLClassLoader(urls(compilePath), JtePrecompileAction.class.getClassLoader())) {
+			if (parameters.getHtmlPolicyClass().isPresent()) {
+				engine.setHtmlPolicy(htmlPolicy(policyLoader, parameters.getHtmlPolicyClass().get()));
+			}
+			engine.precompileAll(compilePath.stream().map(File::getAbsolutePath).collect(Collectors.toList()));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static URL[] urls(Iterable<File> files) throws MalformedURLException {
+		var urls = new ArrayList<URL>();
+		for (var file : files) {
+			urls.add(file.toURI().toURL());
+		}
+		return urls.toArray(new URL[0]);
+	}
+
+	private static HtmlPolicy htmlPolicy(ClassLoader loader, String className) {
+		try {
+			return (HtmlPolicy) loader.loadClass(className).getConstructor().newInstance();
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			throw new IllegalStateException("Unable to create the html policy " + className, e);
+		}
+	}
+
+	/** Resolves every template, so that calls into other groups still compile, but only lists the ones in this group. */
+	private static class GroupCodeResolver implements CodeResolver {
+		private final DirectoryCodeResolver delegate;
+		private final List<String> templateNames;
+
+		GroupCodeResolver(DirectoryCodeResolver delegate, List<String> templateNames) {
+			this.delegate = delegate;
+			this.templateNames = templateNames;
+		}
+
+		@Override
+		public String resolve(String name) {
+			return delegate.resolve(name);
+		}
+
+		@Override
+		public long getLastModified(String name) {
+			return delegate.getLastModified(name);
+		}
+
+		@Override
+		public boolean exists(String name) {
+			return delegate.exists(name);
+		}
+
+		@Override
+		public List<String> resolveAllTemplateNames() {
+			return templateNames;
+		}
+	}
+}
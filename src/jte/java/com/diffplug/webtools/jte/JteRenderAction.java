@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.jte;
+
+import gg.jte.ContentType;
+import gg.jte.TemplateConfig;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.TreeMap;
+import org.gradle.workers.WorkAction;
+
+/** Renders one batch of templates, inside the classloader-isolated worker that `jteModels` submits to. */
+public abstract class JteRenderAction implements WorkAction<JtePlugin.RenderParameters> {
+	@Override
+	public void execute() {
+		var parameters = getParameters();
+		var templateConfig = new TemplateConfig(ContentType.valueOf(parameters.getContentType().get()), parameters.getPackageName().get());
+		var inputDir = parameters.getInputDir().get().getAsFile();
+		var outputDir = parameters.getOutputDir().get().getAsFile();
+		var renderer = new JteRenderer(inputDir, templateConfig, parameters.getDirectRender().get());
+		var cache = parameters.getModelCacheDir().isPresent()
+				? new ModelCache(parameters.getModelCacheDir().get().getAsFile(), templateConfig, parameters.getDirectRender().get())
+				: null;
+		var templateToTarget = new TreeMap<File, File>();
+		var knownHashes = new HashMap<File, String>();
+		var targetPaths = new HashMap<File, String>();
+		for (var normalizedPath : parameters.getNormalizedPaths().get()) {
+			var targetPath = JtePlugin.targetPath(normalizedPath);
+			var target = new File(outputDir, targetPath);
+			templateToTarget.put(new File(inputDir, normalizedPath), target);
+			targetPaths.put(target, targetPath);
+			var knownHash = parameters.getKnownHashes().get().get(targetPath);
+			if (knownHash != null) {
+				knownHashes.put(target, knownHash);
+			}
+		}
+		try {
+			var entries = new TreeMap<String, ModelIndex.Entry>();
+			renderer.renderAll(templateToTarget, knownHashes, cache).forEach((target, entry) -> entries.put(targetPaths.get(target), entry));
+			ModelIndex.write(parameters.getHashFile().get().getAsFile(), entries);
+			if (cache != null) {
+				cache.cleanup();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
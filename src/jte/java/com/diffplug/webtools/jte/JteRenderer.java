@@ -20,64 +20,94 @@ import gg.jte.TemplateConfig;
 import gg.jte.compiler.TemplateParser;
 import gg.jte.compiler.TemplateParserVisitorAdapter;
 import gg.jte.compiler.TemplateType;
+import gg.jte.runtime.ClassInfo;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import org.gradle.api.file.FileType;
-import org.gradle.work.ChangeType;
-import org.gradle.work.InputChanges;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.stream.Collectors;
 
 public class JteRenderer {
-	public static void renderTask(JtePlugin.RenderModelClassesTask task, InputChanges changes) throws IOException {
-		var templateConfig = new TemplateConfig((ContentType) task.getContentType().get(), task.getPackageName().get());
-		var renderer = new JteRenderer(task.getInputDir().getAsFile().get(), templateConfig);
-		for (var change : changes.getFileChanges(task.getInputDir())) {
-			if (change.getFileType() == FileType.DIRECTORY) {
-				return;
-			}
-			String name = change.getFile().getName();
-			if (!name.endsWith(".jte") && !name.endsWith(".kte")) {
-				continue;
-			}
-			var targetFileJte = task.getOutputDir().file(change.getNormalizedPath()).get().getAsFile().getAbsolutePath();
-			var targetFile = new File(targetFileJte.substring(0, targetFileJte.length() - 4) + ".kt");
-			if (change.getChangeType() == ChangeType.REMOVED) {
-				targetFile.delete();
+	/**
+	 * Renders each template to its target, whose parent directory must already exist. A target
+	 * which already exists with its known hash is left untouched, so that its mtime doesn't change.
+	 * Returns the index entry of every target, with its hash and the templates it calls.
+	 */
+	Map<File, ModelIndex.Entry> renderAll(SortedMap<File, File> templateToTarget, Map<File, String> knownHashes) throws IOException {
+		return renderAll(templateToTarget, knownHashes, null);
+	}
+
+	/** Same as {@link #renderAll(SortedMap, Map)}, but only renders the models which aren't in the given cache, which may be null. */
+	Map<File, ModelIndex.Entry> renderAll(SortedMap<File, File> templateToTarget, Map<File, String> knownHashes, ModelCache cache) throws IOException {
+		var entries = new LinkedHashMap<File, ModelIndex.Entry>();
+		for (var entry : templateToTarget.entrySet()) {
+			var target = entry.getValue();
+			var template = Files.readString(entry.getKey().toPath());
+			var templatePath = templatePath(entry.getKey());
+			String model;
+			if (cache == null) {
+				model = render(entry.getKey(), template);
 			} else {
-				targetFile.getParentFile().mkdirs();
-				Files.write(targetFile.toPath(), renderer.render(change.getFile()).getBytes(StandardCharsets.UTF_8));
+				var key = cache.key(templatePath, template);
+				model = cache.get(key);
+				if (model == null) {
+					model = render(entry.getKey(), template);
+					cache.put(key, model);
+				}
+			}
+			var content = model.getBytes(StandardCharsets.UTF_8);
+			var hash = ModelIndex.hash(content);
+			if (!hash.equals(knownHashes.get(target)) || !target.isFile()) {
+				Files.write(target.toPath(), content);
 			}
+			// the calls are in the body, which the model doesn't depend on, so they are scanned even on a cache hit
+			entries.put(target, new ModelIndex.Entry(hash, templatePath, TemplateHeaderScanner.templateCalls(template)));
 		}
+		return entries;
 	}
 
+	/** e.g. `@param Result<?> records` -> `val records: Result<*>`, see {@link KotlinTypes} for the details. */
 	static String convertJavaToKotlin(String javaType) {
-		if (javaType.equals("boolean")) {
-			return "Boolean";
-		} else if (javaType.equals("int")) {
-			return "Int";
-		} else {
-			// e.g. `@param Result<?> records` -> `val records: Result<*>`
-			return javaType
-					.replace("<?>", "<*>")
-					.replace("java.util.Collection", "Collection")
-					.replace("java.util.List", "List")
-					.replace("java.util.Map", "Map")
-					.replace("java.util.Set", "Set");
-		}
+		return KotlinTypes.fromJava(javaType);
 	}
 
+	/** The Java imports which {@link #convertJavaToKotlin} maps to the Kotlin builtins. */
+	private static final Set<String> KOTLIN_MAPPED_IMPORTS = Set.of("java.util.Collection", "java.util.List", "java.util.Map", "java.util.Set");
+
 	final File rootDir;
 	final TemplateConfig config;
+	final boolean directRender;
 
 	JteRenderer(File rootDir, TemplateConfig config) {
+		this(rootDir, config, false);
+	}
+
+	/**
+	 * @param directRender if true, the models call the precompiled template class with positional
+	 *                     arguments, rather than building a `Map` and looking the template up by name
+	 */
+	JteRenderer(File rootDir, TemplateConfig config, boolean directRender) {
 		this.rootDir = rootDir;
 		this.config = config;
+		this.directRender = directRender;
+	}
+
+	/** The template's path relative to {@link #rootDir}, with `/` separators. */
+	private String templatePath(File file) {
+		return file.getAbsolutePath().substring(rootDir.getAbsolutePath().length() + 1).replace(File.separatorChar, '/');
 	}
 
 	String render(File file) throws IOException {
+		return render(file, Files.readString(file.toPath()));
+	}
+
+	private String render(File file, String template) {
 		var pkg = file.getParentFile().getAbsolutePath().substring(rootDir.getAbsolutePath().length() + 1).replace(File.separatorChar, '.');
 		var name = file.getName();
 		var lastDot = name.lastIndexOf('.');
@@ -88,10 +118,16 @@ public class JteRenderer {
 		imports.add("gg.jte.TemplateEngine");
 		imports.add("gg.jte.TemplateOutput");
 		var params = new LinkedHashMap<String, String>();
+		// a Java varargs param, e.g. `@param String... names`, has to be spread into the template's render
+		var varargs = new HashSet<String>();
 
-		new TemplateParser(Files.readString(file.toPath()), TemplateType.Template, new TemplateParserVisitorAdapter() {
+		var visitor = new TemplateParserVisitorAdapter() {
 			@Override
 			public void onImport(String importClass) {
+				if (directRender && KOTLIN_MAPPED_IMPORTS.contains(importClass)) {
+					// the params get the Kotlin type, and the Kotlin compiler won't pass a `java.util.List` to the Java template
+					return;
+				}
 				imports.add(importClass.replace("static ", ""));
 			}
 
@@ -101,19 +137,26 @@ public class JteRenderer {
 				if (idxOfColon == -1) { // .jte
 					// lastIndexOf accounts for valid multiple spaces, e.g `Map<String, String> featureMap`
 					var spaceIdx = parameter.lastIndexOf(' ');
-					var type = parameter.substring(0, spaceIdx).trim();
+					var type = convertJavaToKotlin(parameter.substring(0, spaceIdx));
 					var name = parameter.substring(spaceIdx + 1).trim();
-					if (name.endsWith("Nullable")) {
+					if (parameter.substring(0, spaceIdx).trim().endsWith("...")) {
+						varargs.add(name);
+					}
+					if (name.endsWith("Nullable") && !type.endsWith("?")) {
 						type += "?";
 					}
-					params.put(name, convertJavaToKotlin(type));
+					params.put(name, type);
 				} else { // .kte
 					var name = parameter.substring(0, idxOfColon).trim();
 					var type = parameter.substring(idxOfColon + 1).trim();
 					params.put(name, type);
 				}
 			}
-		}, config).parse();
+		};
+		// the header is all we need, so only pay for the full parser if the header is unusual
+		if (!TemplateHeaderScanner.scan(template, visitor)) {
+			new TemplateParser(template, TemplateType.Template, visitor, config).parse();
+		}
 
 		var builder = new StringBuilder();
 		builder.append("package " + pkg + "\n");
@@ -129,11 +172,40 @@ public class JteRenderer {
 		builder.append("\t) : common.JteModel {\n");
 		builder.append("\n");
 		builder.append("\toverride fun render(engine: TemplateEngine, output: TemplateOutput) {\n");
-		builder.append("\t\tengine.render(\"" + pkg.replace('.', '/') + "/" + name + ext + "\", mapOf(\n");
-		params.forEach((paramName, type) -> {
-			builder.append("\t\t\t\"" + paramName + "\" to " + paramName + ",\n");
-		});
-		builder.append("\t\t), output)\n");
+		if (directRender) {
+			// the same static method that the engine would end up calling, minus the map and the lookup
+			var templateClass = new ClassInfo(pkg.replace('.', '/') + "/" + name + ext, config.packageName).fullName;
+			var templateOutput = config.contentType == ContentType.Html
+					? "output as? gg.jte.html.HtmlTemplateOutput ?: gg.jte.html.OwaspHtmlTemplateOutput(output)"
+					: "output";
+			builder.append("\t\t" + templateClass + ".render(" + templateOutput + ", null,\n");
+			params.keySet().forEach(paramName -> {
+				builder.append("\t\t\t" + (varargs.contains(paramName) ? "*" : "") + paramName + ",\n");
+			});
+			builder.append("\t\t)\n");
+		} else {
+			builder.append("\t\tengine.render(\"" + pkg.replace('.', '/') + "/" + name + ext + "\", mapOf(\n");
+			params.forEach((paramName, type) -> {
+				builder.append("\t\t\t\"" + paramName + "\" to " + paramName + ",\n");
+			});
+			builder.append("\t\t), output)\n");
+		}
+		builder.append("\t}\n");
+		builder.append("\n");
+		builder.append("\tcompanion object {\n");
+		builder.append("\t\tconst val TEMPLATE = \"" + pkg.replace('.', '/') + "/" + name + ext + "\"\n");
+		builder.append("\t\t@JvmField val PARAM_NAMES = arrayOf<String>(" + params.keySet().stream().map(paramName -> "\"" + paramName + "\"").collect(Collectors.joining(", ")) + ")\n");
+		builder.append("\n");
+		builder.append("\t\t/** Calls the constructor with args in the same order as [PARAM_NAMES]. */\n");
+		builder.append("\t\t@Suppress(\"UNCHECKED_CAST\")\n");
+		builder.append("\t\t@JvmStatic fun create(args: Array<Any?>) = " + name + "(\n");
+		int index = 0;
+		for (var type : params.values()) {
+			// a .kte param can have a default value, e.g. `@param n: Int = 3`
+			var defaultIdx = type.indexOf('=');
+			builder.append("\t\t\targs[" + index++ + "] as " + (defaultIdx == -1 ? type : type.substring(0, defaultIdx).trim()) + ",\n");
+		}
+		builder.append("\t\t)\n");
 		builder.append("\t}\n");
 		builder.append("}");
 		return builder.toString();
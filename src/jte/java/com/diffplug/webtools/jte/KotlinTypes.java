@@ -0,0 +1,337 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.jte;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Translates the Java type of a `.jte` `@param` into the Kotlin type of its model
+ * property, e.g. `java.util.Map<String, ? extends List<Integer>>[]` becomes
+ * `Array<Map<String, List<Int>>>`. Handles primitives, arrays and varargs,
+ * nested generics, bounded wildcards, and `@Nullable`/`@NotNull` annotations.
+ * Wildcards follow the variance of Kotlin's own types, the same way that Kotlin
+ * sees the Java type, e.g. `List<? super Integer>` is `MutableList<in Int>`.
+ * Anything it can't parse is passed through as written, for the Kotlin compiler
+ * to complain about. The results are memoized, since a large tree of templates
+ * repeats the same handful of types thousands of times.
+ */
+class KotlinTypes {
+	/** Bounds the cache in a worker daemon which lives across many builds. */
+	private static final int MAX_CACHED = 10_000;
+	private static final Map<String, String> CACHE = new ConcurrentHashMap<>();
+
+	private static final Map<String, String> PRIMITIVES = Map.of(
+			"boolean", "Boolean",
+			"byte", "Byte",
+			"short", "Short",
+			"int", "Int",
+			"long", "Long",
+			"char", "Char",
+			"float", "Float",
+			"double", "Double");
+
+	/** Java types which Kotlin maps to its own builtins, both qualified and as they resolve from `java.lang`. */
+	private static final Map<String, String> CLASSES = Map.ofEntries(
+			Map.entry("Object", "Any"),
+			Map.entry("java.lang.Object", "Any"),
+			Map.entry("java.lang.String", "String"),
+			Map.entry("java.lang.CharSequence", "CharSequence"),
+			Map.entry("java.lang.Number", "Number"),
+			Map.entry("java.lang.Comparable", "Comparable"),
+			Map.entry("java.lang.Iterable", "Iterable"),
+			Map.entry("java.lang.Throwable", "Throwable"),
+			Map.entry("java.lang.Enum", "Enum"),
+			Map.entry("java.lang.Cloneable", "Cloneable"),
+			Map.entry("java.lang.annotation.Annotation", "Annotation"),
+			Map.entry("Boolean", "Boolean"),
+			Map.entry("java.lang.Boolean", "Boolean"),
+			Map.entry("Byte", "Byte"),
+			Map.entry("java.lang.Byte", "Byte"),
+			Map.entry("Short", "Short"),
+			Map.entry("java.lang.Short", "Short"),
+			Map.entry("Integer", "Int"),
+			Map.entry("java.lang.Integer", "Int"),
+			Map.entry("Long", "Long"),
+			Map.entry("java.lang.Long", "Long"),
+			Map.entry("Character", "Char"),
+			Map.entry("java.lang.Character", "Char"),
+			Map.entry("Float", "Float"),
+			Map.entry("java.lang.Float", "Float"),
+			Map.entry("Double", "Double"),
+			Map.entry("java.lang.Double", "Double"),
+			Map.entry("java.util.Collection", "Collection"),
+			Map.entry("java.util.Iterator", "Iterator"),
+			Map.entry("java.util.ListIterator", "ListIterator"),
+			Map.entry("java.util.List", "List"),
+			Map.entry("java.util.Map", "Map"),
+			Map.entry("java.util.Map.Entry", "Map.Entry"),
+			Map.entry("java.util.Set", "Set"));
+
+	/**
+	 * The declaration-site variance of Kotlin's own generic types, `+` for `out`, `-` for `in` and
+	 * `=` for neither, followed by the mutable type to switch to (with its own variance) when a Java
+	 * wildcard goes against the read-only type's, e.g. `in` on `List`'s `out E`.
+	 */
+	private static final Map<String, Variance> VARIANCE = Map.of(
+			"Iterable", new Variance("+", null),
+			"Iterator", new Variance("+", null),
+			"Collection", new Variance("+", "MutableCollection"),
+			"List", new Variance("+", "MutableList"),
+			"ListIterator", new Variance("+", "MutableListIterator"),
+			"Set", new Variance("+", "MutableSet"),
+			"Map", new Variance("=+", "MutableMap"),
+			"Map.Entry", new Variance("++", "MutableMap.MutableEntry"),
+			"Comparable", new Variance("-", null));
+
+	private static class Variance {
+		final String variances;
+		/** Invariant in all of its type parameters, or null if there isn't one. */
+		final String mutable;
+
+		Variance(String variances, String mutable) {
+			this.variances = variances;
+			this.mutable = mutable;
+		}
+
+		/** Returns the type with its arguments, using the mutable type or dropping projections as Kotlin would. */
+		String apply(String name, List<String> arguments) {
+			if (arguments.size() != variances.length()) {
+				return name + "<" + String.join(", ", arguments) + ">";
+			}
+			boolean conflict = false;
+			for (int i = 0; i < arguments.size(); ++i) {
+				conflict |= arguments.get(i).startsWith(conflicting(variances.charAt(i)));
+			}
+			if (conflict && mutable != null) {
+				return mutable + "<" + String.join(", ", arguments) + ">";
+			}
+			var projected = new ArrayList<String>(arguments.size());
+			for (int i = 0; i < arguments.size(); ++i) {
+				String argument = arguments.get(i);
+				char variance = variances.charAt(i);
+				if (variance != '=' && argument.startsWith(conflicting(variance))) {
+					// e.g. `Iterator<in Int>`, which Kotlin can only see as `Iterator<*>`
+					argument = "*";
+				} else if (variance != '=' && argument.startsWith(redundant(variance))) {
+					argument = argument.substring(redundant(variance).length());
+				}
+				projected.add(argument);
+			}
+			return name + "<" + String.join(", ", projected) + ">";
+		}
+
+		private static String conflicting(char variance) {
+			return variance == '+' ? "in " : variance == '-' ? "out " : "\0";
+		}
+
+		private static String redundant(char variance) {
+			return variance == '+' ? "out " : "in ";
+		}
+	}
+
+	/** Matched by simple name, so that the JetBrains, JSR-305, Checker Framework, JSpecify etc. flavors all work. */
+	private static final Set<String> NULLABLE = Set.of("Nullable", "CheckForNull");
+
+	private KotlinTypes() {}
+
+	static String fromJava(String javaType) {
+		String kotlinType = CACHE.get(javaType);
+		if (kotlinType == null) {
+			try {
+				kotlinType = new Parser(javaType).parse();
+			} catch (IllegalArgumentException e) {
+				kotlinType = javaType.trim();
+			}
+			if (CACHE.size() >= MAX_CACHED) {
+				CACHE.clear();
+			}
+			CACHE.put(javaType, kotlinType);
+		}
+		return kotlinType;
+	}
+
+	/** A recursive-descent parser over a single type, which throws {@link IllegalArgumentException} on anything unexpected. */
+	private static class Parser {
+		private final String type;
+		private int i = 0;
+
+		Parser(String type) {
+			this.type = type;
+		}
+
+		String parse() {
+			String result = parseType(false);
+			skipWhitespace();
+			if (i != type.length()) {
+				throw unexpected();
+			}
+			return result;
+		}
+
+		private String parseType(boolean typeArgument) {
+			boolean nullable = parseAnnotations();
+			skipWhitespace();
+			if (typeArgument && peek('?')) {
+				++i;
+				skipWhitespace();
+				if (startsWithWord("extends")) {
+					return "out " + parseType(false);
+				} else if (startsWithWord("super")) {
+					return "in " + parseType(false);
+				} else {
+					return "*";
+				}
+			}
+			String name = parseQualifiedName();
+			List<String> arguments = new ArrayList<>();
+			skipWhitespace();
+			if (peek('<')) {
+				++i;
+				do {
+					arguments.add(parseType(true));
+					skipWhitespace();
+				} while (consume(','));
+				expect('>');
+			}
+			int dimensions = parseDimensions();
+
+			String result;
+			String primitive = PRIMITIVES.get(name);
+			if (primitive != null && arguments.isEmpty()) {
+				if (dimensions == 0) {
+					result = primitive;
+				} else {
+					// `int[]` is `IntArray`, and `int[][]` is `Array<IntArray>`
+					result = primitive + "Array";
+					--dimensions;
+				}
+			} else {
+				result = CLASSES.getOrDefault(name, name);
+				if (!arguments.isEmpty()) {
+					Variance variance = VARIANCE.get(result);
+					result = variance != null ? variance.apply(result, arguments) : result + "<" + String.join(", ", arguments) + ">";
+				}
+			}
+			for (int d = 0; d < dimensions; ++d) {
+				result = "Array<" + result + ">";
+			}
+			return nullable ? result + "?" : result;
+		}
+
+		/** Skips any annotations, and returns true if one of them was a nullable annotation. */
+		private boolean parseAnnotations() {
+			boolean nullable = false;
+			skipWhitespace();
+			while (peek('@')) {
+				++i;
+				String name = parseQualifiedName();
+				if (NULLABLE.contains(name.substring(name.lastIndexOf('.') + 1))) {
+					nullable = true;
+				}
+				skipWhitespace();
+				if (peek('(')) {
+					// e.g. `@Size(max = 3)`
+					int depth = 0;
+					do {
+						if (i == type.length()) {
+							throw unexpected();
+						}
+						char c = type.charAt(i++);
+						if (c == '(') {
+							++depth;
+						} else if (c == ')') {
+							--depth;
+						}
+					} while (depth > 0);
+					skipWhitespace();
+				}
+			}
+			return nullable;
+		}
+
+		private String parseQualifiedName() {
+			int start = i;
+			while (i < type.length() && (Character.isJavaIdentifierPart(type.charAt(i)) || type.charAt(i) == '.')) {
+				if (type.startsWith("...", i)) {
+					break;
+				}
+				++i;
+			}
+			if (start == i || !Character.isJavaIdentifierStart(type.charAt(start))) {
+				throw unexpected();
+			}
+			return type.substring(start, i);
+		}
+
+		/** Counts `[]` pairs, and a trailing `...` counts as one more. */
+		private int parseDimensions() {
+			int dimensions = 0;
+			while (true) {
+				skipWhitespace();
+				if (consume('[')) {
+					skipWhitespace();
+					expect(']');
+					++dimensions;
+				} else if (type.startsWith("...", i)) {
+					i += 3;
+					return dimensions + 1;
+				} else {
+					return dimensions;
+				}
+			}
+		}
+
+		private boolean startsWithWord(String word) {
+			if (type.startsWith(word, i) && (i + word.length() == type.length() || !Character.isJavaIdentifierPart(type.charAt(i + word.length())))) {
+				i += word.length();
+				return true;
+			}
+			return false;
+		}
+
+		private void skipWhitespace() {
+			while (i < type.length() && Character.isWhitespace(type.charAt(i))) {
+				++i;
+			}
+		}
+
+		private boolean peek(char c) {
+			return i < type.length() && type.charAt(i) == c;
+		}
+
+		private boolean consume(char c) {
+			if (peek(c)) {
+				++i;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c) {
+			if (!consume(c)) {
+				throw unexpected();
+			}
+		}
+
+		private IllegalArgumentException unexpected() {
+			return new IllegalArgumentException("Unexpected input at " + i + " in `" + type + "`");
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.jte;
+
+import gg.jte.TemplateConfig;
+import gg.jte.compiler.TemplateParser;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A content-addressed store of rendered models which outlives `clean`, shared by
+ * every build on the machine, so that a fresh checkout only re-parses templates
+ * whose header it hasn't seen before. The key covers everything that the model
+ * depends on: the generator and jte jars, the settings, the template's path, and
+ * its header (or the whole template, if the header is unusual).
+ *
+ * A hit bumps the entry's mtime (at most once a day), and {@link #cleanup()} deletes
+ * the entries which no build has used for a week, the same retention that Gradle
+ * gives the files it creates in its own caches.
+ */
+class ModelCache {
+	/** Computed once per worker classloader, which Gradle keeps warm across builds. */
+	private static final String GENERATOR = generatorHash();
+	static final Duration MAX_UNUSED = Duration.ofDays(7);
+	/** Both how often an entry's mtime gets bumped, and how often the cache gets walked for cleanup. */
+	private static final Duration RESOLUTION = Duration.ofDays(1);
+	static final String CLEANUP_MARKER = "last-cleanup";
+
+	private final File dir;
+	private final String settings;
+
+	ModelCache(File dir, TemplateConfig config, boolean directRender) {
+		this.dir = dir;
+		this.settings = GENERATOR + "\n" + config.contentType + "\n" + config.packageName + "\n" + directRender + "\n";
+	}
+
+	/** @param templatePath the template's path relative to the template root, with `/` separators */
+	String key(String templatePath, String template) {
+		int headerLength = TemplateHeaderScanner.headerLength(template);
+		var header = headerLength == -1 ? template : template.substring(0, headerLength);
+		return ModelIndex.hash((settings + templatePath + "\n" + header).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/** Returns the cached model for the given key, or null if there isn't one. */
+	String get(String key) throws IOException {
+		var file = file(key).toPath();
+		try {
+			String model = Files.readString(file);
+			var now = Instant.now();
+			if (Files.getLastModifiedTime(file).toInstant().isBefore(now.minus(RESOLUTION))) {
+				Files.setLastModifiedTime(file, FileTime.from(now));
+			}
+			return model;
+		} catch (NoSuchFileException e) {
+			// never written, or deleted by a cleanup
+			return null;
+		}
+	}
+
+	void put(String key, String model) throws IOException {
+		var file = file(key).toPath();
+		Files.createDirectories(file.getParent());
+		// write then move, so that a concurrent build never reads a partial entry
+		var temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			Files.writeString(temp, model);
+			Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			// another build got there first with the same content
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/** Deletes the entries which haven't been used for {@link #MAX_UNUSED}, unless that was already done within the last day. */
+	void cleanup() throws IOException {
+		var marker = dir.toPath().resolve(CLEANUP_MARKER);
+		var now = Instant.now();
+		if (Files.exists(marker) && Files.getLastModifiedTime(marker).toInstant().isAfter(now.minus(RESOLUTION))) {
+			return;
+		}
+		Files.createDirectories(dir.toPath());
+		// mark it first, so that concurrent builds don't all walk the cache
+		Files.write(marker, new byte[0]);
+		var cutoff = now.minus(MAX_UNUSED);
+		try (Stream<Path> paths = Files.walk(dir.toPath())) {
+			for (Path path : paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+				try {
+					if (!path.equals(marker) && Files.getLastModifiedTime(path).toInstant().isBefore(cutoff)) {
+						Files.delete(path);
+					}
+				} catch (NoSuchFileException e) {
+					// another build's cleanup got there first
+				}
+			}
+		}
+	}
+
+	private File file(String key) {
+		return new File(dir, key.substring(0, 2) + "/" + key.substring(2) + ".kt");
+	}
+
+	private static String generatorHash() {
+		try {
+			var digest = MessageDigest.getInstance("SHA-256");
+			for (Class<?> clazz : List.of(JteRenderer.class, TemplateParser.class)) {
+				Path location = Path.of(clazz.getProtectionDomain().getCodeSource().getLocation().toURI());
+				// a classes directory during development, otherwise a jar
+				try (Stream<Path> paths = Files.walk(location)) {
+					for (Path path : paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+						digest.update(Files.readAllBytes(path));
+					}
+				}
+			}
+			return HexFormat.of().formatHex(digest.digest());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (URISyntaxException | NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
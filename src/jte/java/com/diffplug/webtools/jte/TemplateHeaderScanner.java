@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.jte;
+
+import gg.jte.compiler.TemplateParserVisitor;
+import gg.jte.compiler.TemplateParserVisitorAdapter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Reads the `@import` and `@param` lines at the top of a template, which is all
+ * that the model generator needs, and stops at the first line of the body. jte
+ * ignores `@param` in the body unless it directly follows a comment, so the rest
+ * of the template only gets a cheap `indexOf` pass to rule that out. The scanner
+ * only handles the common layouts, and returns false for anything unusual so
+ * that the caller can fall back to the full `TemplateParser`.
+ */
+class TemplateHeaderScanner {
+	private static final String IMPORT = "@import ";
+	private static final String PARAM = "@param ";
+	private static final String TEMPLATE_CALL = "@template.";
+	private static final String COMMENT_START = "<%--";
+	private static final String COMMENT_END = "--%>";
+	/** In `ContentType.Html` jte also looks past html comments, which we leave to the full parser. */
+	private static final String HTML_COMMENT_START = "<!--";
+	private static final String HTML_COMMENT_END = "-->";
+
+	private TemplateHeaderScanner() {}
+
+	/** Calls {@link TemplateParserVisitor#onImport} and {@link TemplateParserVisitor#onParam} for the header, or returns false without calling anything. */
+	static boolean scan(String template, TemplateParserVisitor visitor) {
+		return scanHeader(template, visitor) != -1;
+	}
+
+	/** Returns the length of the header, which is all that the model depends on, or -1 if the header is unusual. */
+	static int headerLength(String template) {
+		return scanHeader(template, new TemplateParserVisitorAdapter());
+	}
+
+	/**
+	 * Returns the names of the templates called with `@template.name(...)`, e.g. `layout.page`, in order
+	 * of first appearance. A plain scan rather than a full parse, which only skips `<%-- --%>` comments.
+	 */
+	static List<String> templateCalls(String template) {
+		var calls = new LinkedHashSet<String>();
+		int nextComment = template.indexOf(COMMENT_START);
+		int i = 0;
+		while ((i = template.indexOf(TEMPLATE_CALL, i)) != -1) {
+			if (nextComment != -1 && nextComment < i) {
+				// skip the comment, and search again from its end
+				int commentEnd = template.indexOf(COMMENT_END, nextComment + COMMENT_START.length());
+				if (commentEnd == -1) {
+					break;
+				}
+				i = commentEnd + COMMENT_END.length();
+				nextComment = template.indexOf(COMMENT_START, i);
+				continue;
+			}
+			int start = i + TEMPLATE_CALL.length();
+			int end = start;
+			while (end < template.length() && (Character.isJavaIdentifierPart(template.charAt(end)) || template.charAt(end) == '.')) {
+				++end;
+			}
+			if (end < template.length() && template.charAt(end) == '(' && end > start) {
+				calls.add(template.substring(start, end));
+			}
+			i = end;
+		}
+		return new ArrayList<>(calls);
+	}
+
+	private static int scanHeader(String template, TemplateParserVisitor visitor) {
+		var imports = new ArrayList<String>();
+		var params = new ArrayList<String>();
+		// true for an import, false for a param, so that the callbacks keep their original order
+		var isImport = new ArrayList<Boolean>();
+		int i = 0;
+		int length = template.length();
+		while (true) {
+			while (i < length && isHeaderWhitespace(template.charAt(i))) {
+				++i;
+			}
+			if (i == length) {
+				break;
+			}
+			if (template.startsWith(COMMENT_START, i)) {
+				int end = template.indexOf(COMMENT_END, i + COMMENT_START.length());
+				if (end == -1) {
+					return -1;
+				}
+				i = end + COMMENT_END.length();
+				continue;
+			}
+			if (template.startsWith(HTML_COMMENT_START, i)) {
+				return -1;
+			}
+			boolean importLine = template.startsWith(IMPORT, i);
+			if (!importLine && !template.startsWith(PARAM, i)) {
+				if (template.startsWith("@import", i) || template.startsWith("@param", i) || Character.isWhitespace(template.charAt(i))) {
+					// e.g. `@param\tString x`, which jte accepts but we don't bother with
+					return -1;
+				}
+				// the body has started, but jte still picks up a header line which directly follows a comment
+				if (headerAfterComment(template, i)) {
+					return -1;
+				}
+				break;
+			}
+			int start = i + (importLine ? IMPORT.length() : PARAM.length());
+			int newline = template.indexOf('\n', start);
+			if (newline == -1) {
+				// jte drops a header line which isn't terminated, let it decide
+				return -1;
+			}
+			String value = template.substring(start, newline).trim();
+			if (value.indexOf('\r') != -1 || value.indexOf('@') != -1 || value.indexOf('`') != -1) {
+				// jte gives these special meaning even inside a header line
+				return -1;
+			}
+			(importLine ? imports : params).add(value);
+			isImport.add(importLine);
+			i = newline + 1;
+		}
+		int nextImport = 0;
+		int nextParam = 0;
+		for (boolean importLine : isImport) {
+			if (importLine) {
+				visitor.onImport(imports.get(nextImport++));
+			} else {
+				visitor.onParam(params.get(nextParam++));
+			}
+		}
+		return i;
+	}
+
+	private static boolean headerAfterComment(String template, int from) {
+		return headerAfter(template, from, COMMENT_END) || headerAfter(template, from, HTML_COMMENT_END);
+	}
+
+	private static boolean headerAfter(String template, int from, String commentEnd) {
+		for (int end = template.indexOf(commentEnd, from); end != -1; end = template.indexOf(commentEnd, end + 1)) {
+			int next = end + commentEnd.length();
+			while (next < template.length() && Character.isWhitespace(template.charAt(next))) {
+				++next;
+			}
+			if (template.startsWith("@import", next) || template.startsWith("@param", next)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isHeaderWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+	}
+}
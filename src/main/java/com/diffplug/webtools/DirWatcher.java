@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+/**
+ * Watches a directory tree, and reports changed files in batches. A batch is
+ * flushed once the tree has been quiet for a short while, so a bundler which
+ * rewrites thousands of files produces a single batch rather than thousands.
+ * If the OS drops events, the batch contains only the root directory, which
+ * means "assume everything changed". The same goes for a root which is deleted
+ * and recreated, e.g. by a clean build, which is watched again once it is back,
+ * and for a root which doesn't exist yet, which is watched once it appears.
+ */
+public class DirWatcher implements AutoCloseable {
+	private static final Logger LOGGER = Logging.getLogger(DirWatcher.class);
+
+	/** How long the tree has to be quiet before we flush a batch. */
+	private static final long QUIET_MS = 200;
+	/** The longest we will hold a batch during a continuous stream of changes. */
+	private static final long MAX_DELAY_MS = 5_000;
+	/** How often we check whether a deleted root has come back. */
+	private static final long ROOT_POLL_MS = 500;
+
+	private final Path root;
+	private final Consumer<Set<Path>> onBatch;
+	private final WatchService watchService;
+	private final Thread thread;
+	/** Null until the root exists, only touched by the watcher thread once it has started. */
+	private WatchKey rootKey;
+
+	public DirWatcher(Path root, Consumer<Set<Path>> onBatch) throws IOException {
+		this.root = root;
+		this.onBatch = onBatch;
+		this.watchService = root.getFileSystem().newWatchService();
+		registerAll(root, null);
+		thread = new Thread(this::run, "DirWatcher " + root);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Registers the given directory and all of its subdirectories, adding any files found to `changed`.
+	 * Anything which disappears during the walk is skipped, its delete event is on its way.
+	 */
+	private void registerAll(Path dir, Set<Path> changed) throws IOException {
+		Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) throws IOException {
+				WatchKey key;
+				try {
+					key = path.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+				} catch (NoSuchFileException e) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				if (path.equals(root)) {
+					rootKey = key;
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+				if (changed != null) {
+					changed.add(path);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path path, IOException e) throws IOException {
+				if (e instanceof NoSuchFileException) {
+					return FileVisitResult.CONTINUE;
+				}
+				throw e;
+			}
+		});
+	}
+
+	private void run() {
+		Set<Path> batch = new LinkedHashSet<>();
+		long batchStart = 0;
+		try {
+			while (true) {
+				WatchKey key;
+				if (rootKey == null || !rootKey.isValid()) {
+					key = watchService.poll(batch.isEmpty() ? ROOT_POLL_MS : QUIET_MS, TimeUnit.MILLISECONDS);
+					if (key == null && batch.isEmpty() && Files.isDirectory(root)) {
+						batchStart = System.currentTimeMillis();
+						reregisterRoot(batch);
+						continue;
+					}
+				} else {
+					key = batch.isEmpty() ? watchService.take() : watchService.poll(QUIET_MS, TimeUnit.MILLISECONDS);
+				}
+				if (key != null) {
+					if (batch.isEmpty()) {
+						batchStart = System.currentTimeMillis();
+					}
+					collect(key, batch);
+				}
+				if (!batch.isEmpty() && (key == null || System.currentTimeMillis() - batchStart > MAX_DELAY_MS)) {
+					try {
+						onBatch.accept(batch);
+					} catch (Exception e) {
+						LOGGER.error("Error handling changes in " + root, e);
+					}
+					batch = new LinkedHashSet<>();
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// we've been closed
+		} catch (RuntimeException e) {
+			LOGGER.error("Stopped watching " + root, e);
+		}
+	}
+
+	/** The root was deleted and has come back, or has appeared for the first time, so everything in it is new. */
+	private void reregisterRoot(Set<Path> batch) {
+		batch.add(root);
+		try {
+			registerAll(root, null);
+		} catch (IOException e) {
+			// it went away again, we'll try again once it's back
+			if (rootKey != null && rootKey.isValid()) {
+				rootKey.cancel();
+			}
+		}
+	}
+
+	private void collect(WatchKey key, Set<Path> batch) {
+		Path dir = (Path) key.watchable();
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				batch.add(root);
+				continue;
+			}
+			Path path = dir.resolve((Path) event.context());
+			batch.add(path);
+			if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+				try {
+					registerAll(path, batch);
+				} catch (IOException | UncheckedIOException e) {
+					batch.add(root);
+				}
+			}
+		}
+		if (!key.reset() && key == rootKey) {
+			// the root itself is gone, `run` polls until it's back
+			batch.add(root);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+		thread.interrupt();
+	}
+}
@@ -23,10 +23,15 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class SetupCleanup<K> {
+	/** One lock per key file, for the setups which opt into {@link #lockPerKeyFile()}. */
+	private static final ConcurrentHashMap<File, Object> LOCKS = new ConcurrentHashMap<>();
+
 	public void start(File keyFile, K key) throws Exception {
-		synchronized (key.getClass()) {
+		Object lock = lockPerKeyFile() ? LOCKS.computeIfAbsent(keyFile.getAbsoluteFile(), unused -> new Object()) : key.getClass();
+		synchronized (lock) {
 			byte[] required = toBytes(key);
 			if (keyFile.exists()) {
 				byte[] actual = Files.readAllBytes(keyFile.toPath());
@@ -35,9 +40,7 @@ public abstract class SetupCleanup<K> {
 					return;
 				} else {
 					Files.delete(keyFile.toPath());
-					@SuppressWarnings("unchecked")
-					K lastKey = (K) fromBytes(required);
-					doStop(lastKey);
+					doStop(lastKey(actual, required));
 				}
 			}
 			// write out the key
@@ -47,6 +50,25 @@ public abstract class SetupCleanup<K> {
 		}
 	}
 
+	/**
+	 * By default, setups with the same key class run one at a time, even for different key files,
+	 * e.g. so that two docker-compose setups never race each other for ports or container names.
+	 * Return true if setups with different key files are independent, so they only wait on their own.
+	 */
+	protected boolean lockPerKeyFile() {
+		return false;
+	}
+
+	/** The key which was set up last, or the new key if the persisted one was written by an incompatible version of its class. */
+	@SuppressWarnings("unchecked")
+	private K lastKey(byte[] actual, byte[] required) throws IOException, ClassNotFoundException {
+		try {
+			return (K) fromBytes(actual);
+		} catch (IOException | ClassNotFoundException e) {
+			return (K) fromBytes(required);
+		}
+	}
+
 	protected abstract void doStart(K key) throws Exception;
 
 	protected abstract void doStop(K key) throws Exception;
@@ -61,12 +83,10 @@ public abstract class SetupCleanup<K> {
 		return bytes.toByteArray();
 	}
 
-	private static Object fromBytes(byte[] raw) throws ClassNotFoundException {
+	private static Object fromBytes(byte[] raw) throws IOException, ClassNotFoundException {
 		ByteArrayInputStream bytes = new ByteArrayInputStream(raw);
 		try (ObjectInputStream objectOutput = new ObjectInputStream(bytes)) {
 			return objectOutput.readObject();
-		} catch (IOException e) {
-			throw new RuntimeException(e);
 		}
 	}
 }
@@ -20,15 +20,40 @@ import static org.joor.Reflect.onClass;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import javax.inject.Inject;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.file.FileType;
+import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.plugins.JavaPluginExtension;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.*;
+import org.gradle.work.ChangeType;
 import org.gradle.work.Incremental;
 import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.gradle.workers.WorkerExecutor;
 
 public class JtePlugin implements Plugin<Project> {
 	@Override
@@ -52,10 +77,89 @@ public class JtePlugin implements Plugin<Project> {
 			task.getInputDir().set((File) extension.call("getSourceDirectory").call("get").call("toFile").get());
 			task.getPackageName().set((Property<String>) extension.call("getPackageName").get());
 			task.getContentType().set((Property<Enum<?>>) extension.call("getContentType").get());
+			task.getDirectRender().convention(false);
+			task.getModelCacheDir().convention(project.getLayout().dir(project.provider(() -> new File(project.getGradle().getGradleUserHomeDir(), "caches/webtools/jte-models"))));
+			task.getJteClasspath().from(
+					jarContaining("gg.jte.compiler.TemplateParser"),
+					jarContaining("gg.jte.TemplateConfig"),
+					jarContaining(RENDER_ACTION),
+					jarContaining(JtePlugin.class.getName()));
 		});
-		project.getTasks().named("compileKotlin").configure(task -> task.dependsOn(jteModelsTask));
+		project.getTasks().register("jteGraph", TemplateGraphTask.class, task -> {
+			task.getIndexFile().set(jteModelsTask.flatMap(jteModels -> jteModels.getOutputDir().file(ModelIndex.FILENAME)));
+			task.getOutputDir().set(project.getLayout().getBuildDirectory().dir("jte-graph"));
+		});
+		// jte loads its Kotlin compiler from its own classloader, so `.kte` templates need `jte-kotlin` next to it in the worker
+		var jteCompiler = project.getConfigurations().create("jteCompiler", configuration -> {
+			configuration.setCanBeConsumed(false);
+			configuration.exclude(Map.of("group", "gg.jte", "module", "jte"));
+			configuration.exclude(Map.of("group", "gg.jte", "module", "jte-runtime"));
+			configuration.defaultDependencies(dependencies -> {
+				if (hasKotlinTemplates((File) extension.call("getSourceDirectory").call("get").call("toFile").get())) {
+					dependencies.add(project.getDependencies().create("gg.jte:jte-kotlin:" + jteVersion()));
+				}
+			});
+		});
+		@SuppressWarnings("unchecked")
+		var jtePrecompileTask = project.getTasks().register("jtePrecompile", PrecompileTemplatesTask.class, task -> {
+			task.getInputDir().set(jteModelsTask.flatMap(RenderModelClassesTask::getInputDir));
+			task.getIndexFile().set(jteModelsTask.flatMap(jteModels -> jteModels.getOutputDir().file(ModelIndex.FILENAME)));
+			task.getPackageName().set(jteModelsTask.flatMap(RenderModelClassesTask::getPackageName));
+			task.getContentType().set(jteModelsTask.flatMap(jteModels -> jteModels.getContentType().map(Enum::name)));
+			task.getTrimControlStructures().set(((Property<Boolean>) extension.call("getTrimControlStructures").get()).orElse(false));
+			task.getHtmlCommentsPreserved().set(((Property<Boolean>) extension.call("getHtmlCommentsPreserved").get()).orElse(false));
+			task.getHtmlTags().set((Property<String[]>) extension.call("getHtmlTags").get());
+			task.getHtmlPolicyClass().set((Property<String>) extension.call("getHtmlPolicyClass").get());
+			task.getBinaryStaticContent().set(((Property<Boolean>) extension.call("getBinaryStaticContent").get()).orElse(false));
+			task.getCompileArgs().set((Property<String[]>) extension.call("getCompileArgs").get());
+			task.getKotlinCompileArgs().set((Property<String[]>) extension.call("getKotlinCompileArgs").get());
+			task.getCompilePath().from(project.getConfigurations().named(main.getCompileClasspathConfigurationName()), main.getOutput().getClassesDirs());
+			task.getJteClasspath().from(jteModelsTask.map(RenderModelClassesTask::getJteClasspath), jteCompiler);
+			task.getOutputDir().set(project.getLayout().getBuildDirectory().dir("jte-precompiled"));
+		});
+		project.getTasks().register("jteModelsWatch", WatchModelClassesTask.class, task -> {
+			task.dependsOn(jteModelsTask);
+			task.getInputDir().set(jteModelsTask.flatMap(RenderModelClassesTask::getInputDir));
+			task.getOutputDir().set(jteModelsTask.flatMap(RenderModelClassesTask::getOutputDir));
+			task.getPackageName().set(jteModelsTask.flatMap(RenderModelClassesTask::getPackageName));
+			task.getContentType().set(jteModelsTask.flatMap(jteModels -> jteModels.getContentType().map(Enum::name)));
+			task.getDirectRender().set(jteModelsTask.flatMap(RenderModelClassesTask::getDirectRender));
+		});
+		project.getTasks().named("compileKotlin").configure(task -> {
+			task.dependsOn(jteModelsTask);
+			// with `jte { generate() }` the template classes are sources in `main`, which the Kotlin compiler reads too
+			task.dependsOn(project.getTasks().matching(t -> t.getName().equals("generateJte")));
+		});
+	}
+
+	/** Lives in the `jte` glue source set, so that it can be compiled against jte. */
+	private static final String RENDER_ACTION = "com.diffplug.webtools.jte.JteRenderAction";
+	/** Glue, like {@link #RENDER_ACTION}. */
+	private static final String PRECOMPILE_ACTION = "com.diffplug.webtools.jte.JtePrecompileAction";
+	/** Also glue, loaded by the plugin's own classloader, which has jte on it via `gg.jte.gradle`. */
+	private static final String WATCHER = "com.diffplug.webtools.jte.JteModelsWatcher";
+
+	/** Returns the jar (or classes directory) on the plugin classpath which contains the given class. */
+	private static File jarContaining(String className) {
+		String resource = className.replace('.', '/') + ".class";
+		URL url = JtePlugin.class.getClassLoader().getResource(resource);
+		if (url == null) {
+			throw new GradleException("Unable to find " + className + " on the plugin classpath.");
+		}
+		try {
+			if (url.getProtocol().equals("jar")) {
+				String path = url.getPath();
+				return new File(new URI(path.substring(0, path.indexOf("!/"))));
+			} else {
+				String path = new File(url.toURI()).getAbsolutePath();
+				return new File(path.substring(0, path.length() - resource.length()));
+			}
+		} catch (URISyntaxException e) {
+			throw new GradleException("Unable to locate " + url, e);
+		}
 	}
 
+	@CacheableTask
 	public static abstract class RenderModelClassesTask extends DefaultTask {
 		@Incremental
 		@PathSensitive(PathSensitivity.RELATIVE)
@@ -71,9 +175,452 @@ public class JtePlugin implements Plugin<Project> {
 		@Input
 		abstract Property<Enum<?>> getContentType();
 
+		/**
+		 * If true, each model calls its precompiled template class directly with positional arguments,
+		 * rather than `engine.render(name, mapOf(...), output)`, so rendering allocates no map, pairs or
+		 * boxes. Requires the templates to be generated as sources with `jte { generate() }`, and
+		 * bypasses the engine, so its hot reload and `HtmlInterceptor` don't apply.
+		 */
+		@Input
+		public abstract Property<Boolean> getDirectRender();
+
+		/**
+		 * A content-addressed cache of rendered models, shared across projects and builds and kept through
+		 * `clean`, so that a fresh checkout only re-parses the templates with a header it hasn't seen before.
+		 * Defaults to `caches/webtools/jte-models` in the Gradle user home, and doesn't affect the task's outputs.
+		 * Entries which no build has used for 7 days get deleted.
+		 */
+		@Internal
+		public abstract DirectoryProperty getModelCacheDir();
+
+		/** The jte compiler and the webtools glue, loaded in an isolated classloader which Gradle keeps warm across builds. */
+		@Classpath
+		abstract ConfigurableFileCollection getJteClasspath();
+
+		@Inject
+		protected abstract WorkerExecutor getWorkerExecutor();
+
+		@TaskAction
+		public void render(InputChanges changes) throws IOException, InterruptedException {
+			var outputDir = getOutputDir().get().getAsFile();
+			var indexFile = new File(outputDir, ModelIndex.FILENAME);
+			var known = ModelIndex.read(indexFile);
+			// a non-incremental run re-renders everything, so anything it doesn't render is stale
+			var index = changes.isIncremental() ? new TreeMap<>(known) : new TreeMap<String, ModelIndex.Entry>();
+			var toRender = new TreeMap<String, File>();
+			for (var change : changes.getFileChanges(getInputDir())) {
+				if (change.getFileType() == FileType.DIRECTORY) {
+					continue;
+				}
+				String name = change.getFile().getName();
+				if (!name.endsWith(".jte") && !name.endsWith(".kte")) {
+					continue;
+				}
+				var targetFile = new File(outputDir, targetPath(change.getNormalizedPath()));
+				if (change.getChangeType() == ChangeType.REMOVED) {
+					// deletions happen right away, so that renaming `Foo.jte` to `Foo.kte` doesn't delete the freshly rendered `Foo.kt`
+					Files.deleteIfExists(targetFile.toPath());
+					index.remove(targetPath(change.getNormalizedPath()));
+					known.remove(targetPath(change.getNormalizedPath()));
+				} else {
+					toRender.put(change.getNormalizedPath(), targetFile);
+				}
+			}
+			if (toRender.isEmpty()) {
+				ModelIndex.writeWithRegistry(outputDir, getPackageName().get(), index);
+				return;
+			}
+			// create every parent up front, so that the workers never race on mkdirs
+			var parents = new TreeSet<File>();
+			toRender.values().forEach(targetFile -> parents.add(targetFile.getParentFile()));
+			for (var parent : parents) {
+				Files.createDirectories(parent.toPath());
+			}
+
+			Class<? extends WorkAction<RenderParameters>> action = loadRenderAction();
+			var queue = getWorkerExecutor().classLoaderIsolation(spec -> spec.getClasspath().from(getJteClasspath()));
+			var paths = new ArrayList<>(toRender.keySet());
+			int chunks = Math.min(Runtime.getRuntime().availableProcessors(), (paths.size() + MIN_PER_WORK_ITEM - 1) / MIN_PER_WORK_ITEM);
+			var hashFiles = new ArrayList<File>();
+			for (int i = 0; i < chunks; ++i) {
+				var chunk = paths.subList(i * paths.size() / chunks, (i + 1) * paths.size() / chunks);
+				var chunkHashes = new TreeMap<String, String>();
+				for (var path : chunk) {
+					var entry = known.get(targetPath(path));
+					if (entry != null) {
+						chunkHashes.put(targetPath(path), entry.hash);
+					}
+				}
+				// each work item reports its hashes in its own file, so the workers never contend on the index
+				var hashFile = new File(getTemporaryDir(), "hashes-" + i);
+				Files.deleteIfExists(hashFile.toPath());
+				hashFiles.add(hashFile);
+				queue.submit(action, parameters -> {
+					parameters.getInputDir().set(getInputDir());
+					parameters.getOutputDir().set(getOutputDir());
+					parameters.getPackageName().set(getPackageName());
+					parameters.getContentType().set(getContentType().get().name());
+					parameters.getDirectRender().set(getDirectRender());
+					parameters.getModelCacheDir().set(getModelCacheDir());
+					parameters.getNormalizedPaths().set(chunk);
+					parameters.getKnownHashes().set(chunkHashes);
+					parameters.getHashFile().set(hashFile);
+				});
+			}
+			queue.await();
+			for (var hashFile : hashFiles) {
+				index.putAll(ModelIndex.read(hashFile));
+				Files.delete(hashFile.toPath());
+			}
+			ModelIndex.writeWithRegistry(outputDir, getPackageName().get(), index);
+		}
+
+		/** Parsing a template is cheap, so small batches don't get split into tiny work items. */
+		private static final int MIN_PER_WORK_ITEM = 16;
+
+		@SuppressWarnings("unchecked")
+		private static Class<? extends WorkAction<RenderParameters>> loadRenderAction() {
+			return (Class<? extends WorkAction<RenderParameters>>) loadGlue(RENDER_ACTION);
+		}
+	}
+
+	/**
+	 * Reads the `@template` calls which `jteModels` records in its index, writes the call graph
+	 * and a warm-up order (the most widely used templates first) to its output dir, and reports
+	 * templates which are unreachable from the entry points, and calls to missing templates.
+	 */
+	public static abstract class TemplateGraphTask extends DefaultTask {
+		static final String GRAPH = "graph.txt";
+		static final String WARMUP = "warmup.txt";
+		static final String REPORT = "report.txt";
+
+		@InputFile
+		@PathSensitive(PathSensitivity.NONE)
+		abstract RegularFileProperty getIndexFile();
+
+		/**
+		 * The templates which are rendered from code, as paths or path prefixes like `pages/`. Anything
+		 * these don't reach through `@template` calls is reported as unreachable. If empty, only the
+		 * templates which no other template calls are listed.
+		 */
+		@Input
+		public abstract ListProperty<String> getEntryPoints();
+
+		@OutputDirectory
+		abstract DirectoryProperty getOutputDir();
+
+		@TaskAction
+		public void analyze() throws IOException {
+			var graph = new TemplateGraph(ModelIndex.read(getIndexFile().get().getAsFile()).values());
+			var outputDir = getOutputDir().get().getAsFile();
+
+			var edges = new StringBuilder();
+			for (var template : graph.templates()) {
+				for (var callee : graph.callees(template)) {
+					edges.append(template).append('\t').append(callee).append('\n');
+				}
+			}
+			Files.writeString(new File(outputDir, GRAPH).toPath(), edges);
+			Files.write(new File(outputDir, WARMUP).toPath(), graph.warmupOrder());
+
+			var report = new StringBuilder();
+			var entryPoints = getEntryPoints().get();
+			if (entryPoints.isEmpty()) {
+				var roots = graph.roots();
+				report.append(roots.size()).append(" of ").append(graph.templates().size()).append(" templates aren't called by any other template, set `entryPoints` to find the unreachable ones:\n");
+				roots.forEach(root -> report.append("  ").append(root).append('\n'));
+			} else {
+				var unreachable = graph.unreachableFrom(template -> entryPoints.stream().anyMatch(template::startsWith));
+				report.append(unreachable.size()).append(" of ").append(graph.templates().size()).append(" templates are unreachable from ").append(String.join(", ", entryPoints)).append(":\n");
+				unreachable.forEach(template -> report.append("  ").append(template).append('\n'));
+			}
+			graph.missing().forEach((template, calls) -> calls.forEach(call -> report.append(template).append(" calls missing template ").append(call).append('\n')));
+			Files.writeString(new File(outputDir, REPORT).toPath(), report);
+			getLogger().lifecycle(report.toString().trim());
+		}
+	}
+
+	/**
+	 * Runs `jteModels` once, then keeps one renderer warm and re-renders the model of each
+	 * template as it is saved, until a key is pressed. Each save takes milliseconds, since
+	 * it skips Gradle's task scheduling and the worker round trip.
+	 */
+	public static abstract class WatchModelClassesTask extends DefaultTask {
+		@Internal
+		abstract DirectoryProperty getInputDir();
+
+		@Internal
+		abstract DirectoryProperty getOutputDir();
+
+		@Internal
+		abstract Property<String> getPackageName();
+
+		@Internal
+		abstract Property<String> getContentType();
+
+		@Internal
+		abstract Property<Boolean> getDirectRender();
+
+		@TaskAction
+		public void watch() throws Exception {
+			var inputDir = getInputDir().get().getAsFile();
+			var constructor = loadGlue(WATCHER).getConstructor(File.class, File.class, String.class, String.class, boolean.class);
+			try (var watcher = (AutoCloseable) constructor.newInstance(inputDir, getOutputDir().get().getAsFile(),
+					getPackageName().get(), getContentType().get(), getDirectRender().get())) {
+				// flush anything sitting in the buffer, then wait for user input to stop
+				while (System.in.available() > 0) {
+					System.in.read();
+				}
+				System.out.println("Watching " + inputDir + " for template changes. Press any key to stop.");
+				System.in.read();
+			}
+		}
+	}
+
+	private static boolean hasKotlinTemplates(File inputDir) {
+		if (!inputDir.isDirectory()) {
+			return false;
+		}
+		try (Stream<Path> paths = Files.walk(inputDir.toPath())) {
+			return paths.anyMatch(path -> path.toString().endsWith(".kte"));
+		} catch (IOException e) {
+			throw new GradleException("Unable to list " + inputDir, e);
+		}
+	}
+
+	/** The version of jte which `gg.jte.gradle` brought onto the plugin classpath, so that `jte-kotlin` matches it. */
+	private static String jteVersion() {
+		try (var input = JtePlugin.class.getClassLoader().getResourceAsStream("META-INF/maven/gg.jte/jte/pom.properties")) {
+			if (input == null) {
+				throw new GradleException("Unable to find the version of jte, add `gg.jte:jte-kotlin` to the `jteCompiler` configuration yourself");
+			}
+			var properties = new Properties();
+			properties.load(input);
+			return properties.getProperty("version");
+		} catch (IOException e) {
+			throw new GradleException("Unable to read the version of jte", e);
+		}
+	}
+
+	/**
+	 * Precompiles every template to classes with jte's own compiler, the same way `precompileJte` does,
+	 * but with one classloader-isolated work item per top-level template directory, so the directories
+	 * compile in parallel. A template which calls into another directory compiles its callees too,
+	 * which duplicates some work but produces the same classes.
+	 *
+	 * Also writes {@link #WARMUP}, every template with the most widely used first (see
+	 * {@link TemplateGraph#warmupOrder()}), so that a server can load them eagerly at boot.
+	 * The output dir has only classes and resources, and is left for the build to add to `main`'s
+	 * output, since with `jte { generate() }` the templates are compiled from sources instead.
+	 */
+	@CacheableTask
+	public static abstract class PrecompileTemplatesTask extends DefaultTask {
+		/** A resource at the root of the output dir, one template path per line. */
+		static final String WARMUP = "jte-warmup.txt";
+
+		@PathSensitive(PathSensitivity.RELATIVE)
+		@InputDirectory
+		abstract DirectoryProperty getInputDir();
+
+		/** The `jteModels` index, which has the `@template` calls that the warm-up order is built from. */
+		@InputFile
+		@PathSensitive(PathSensitivity.NONE)
+		abstract RegularFileProperty getIndexFile();
+
+		@Input
+		abstract Property<String> getPackageName();
+
+		@Input
+		abstract Property<String> getContentType();
+
+		@Input
+		abstract Property<Boolean> getTrimControlStructures();
+
+		@Input
+		abstract Property<Boolean> getHtmlCommentsPreserved();
+
+		@Input
+		@Optional
+		abstract Property<String[]> getHtmlTags();
+
+		/** A `gg.jte.html.HtmlPolicy` with a no-arg constructor, loaded from {@link #getCompilePath()}. */
+		@Input
+		@Optional
+		abstract Property<String> getHtmlPolicyClass();
+
+		/** The `.bin` files go into the output dir next to the classes, rather than to jte's `targetResourceDirectory`. */
+		@Input
+		abstract Property<Boolean> getBinaryStaticContent();
+
+		@Input
+		@Optional
+		abstract Property<String[]> getCompileArgs();
+
+		@Input
+		@Optional
+		abstract Property<String[]> getKotlinCompileArgs();
+
+		/**
+		 * The classes which the templates import, which are only passed to the compiler, and never loaded by
+		 * the worker except for the html policy. This is `main`'s compile classpath and classes, not jte's
+		 * `compilePath`, which defaults to the runtime classpath and so would include this task's own output.
+		 */
+		@Classpath
+		abstract ConfigurableFileCollection getCompilePath();
+
+		/** The worker's classpath, which is jte and our glue, plus `jte-kotlin` if there are `.kte` templates. */
+		@Classpath
+		abstract ConfigurableFileCollection getJteClasspath();
+
+		/** The precompiled classes and `jte-warmup.txt`, e.g. for `sourceSets.main.output.dir`. */
+		@OutputDirectory
+		public abstract DirectoryProperty getOutputDir();
+
+		@Inject
+		protected abstract WorkerExecutor getWorkerExecutor();
+
+		@Inject
+		protected abstract FileSystemOperations getFileSystemOperations();
+
 		@TaskAction
-		public void render(InputChanges changes) throws IOException {
-			onClass("com.diffplug.webtools.jte.JteRenderer").call("renderTask", this, changes);
+		public void precompile() throws IOException {
+			var outputDir = getOutputDir().get().getAsFile();
+			getFileSystemOperations().delete(spec -> spec.delete(outputDir));
+			var inputDir = getInputDir().get().getAsFile().toPath();
+			var groups = new TreeMap<String, List<String>>();
+			try (Stream<Path> paths = Files.walk(inputDir)) {
+				paths.filter(Files::isRegularFile).forEach(path -> {
+					var templatePath = inputDir.relativize(path).toString().replace(File.separatorChar, '/');
+					if (templatePath.endsWith(".jte") || templatePath.endsWith(".kte")) {
+						int slash = templatePath.indexOf('/');
+						var group = slash == -1 ? "" : templatePath.substring(0, slash);
+						groups.computeIfAbsent(group, unused -> new ArrayList<>()).add(templatePath);
+					}
+				});
+			}
+			var groupsDir = new File(getTemporaryDir(), "groups");
+			getFileSystemOperations().delete(spec -> spec.delete(groupsDir));
+
+			Class<? extends WorkAction<PrecompileParameters>> action = loadPrecompileAction();
+			var queue = getWorkerExecutor().classLoaderIsolation(spec -> spec.getClasspath().from(getJteClasspath()));
+			var classDirs = new ArrayList<File>();
+			for (var group : groups.entrySet()) {
+				var classDir = new File(groupsDir, group.getKey().isEmpty() ? "_root" : group.getKey());
+				classDirs.add(classDir);
+				queue.submit(action, parameters -> {
+					parameters.getInputDir().set(getInputDir());
+					parameters.getClassDir().set(classDir);
+					parameters.getPackageName().set(getPackageName());
+					parameters.getContentType().set(getContentType());
+					parameters.getTrimControlStructures().set(getTrimControlStructures());
+					parameters.getHtmlCommentsPreserved().set(getHtmlCommentsPreserved());
+					parameters.getHtmlTags().set(getHtmlTags());
+					parameters.getHtmlPolicyClass().set(getHtmlPolicyClass());
+					parameters.getBinaryStaticContent().set(getBinaryStaticContent());
+					parameters.getCompileArgs().set(getCompileArgs());
+					parameters.getKotlinCompileArgs().set(getKotlinCompileArgs());
+					parameters.getTemplateNames().set(group.getValue());
+					parameters.getCompilePath().from(getCompilePath());
+				});
+			}
+			queue.await();
+
+			// merge the groups, a class which more than one group compiled is the same in each, and the sources jte compiled them from stay behind
+			for (var classDir : classDirs) {
+				if (!classDir.isDirectory()) {
+					continue;
+				}
+				try (Stream<Path> paths = Files.walk(classDir.toPath())) {
+					for (var path : (Iterable<Path>) paths.filter(Files::isRegularFile).filter(path -> !isSource(path))::iterator) {
+						var target = outputDir.toPath().resolve(classDir.toPath().relativize(path));
+						Files.createDirectories(target.getParent());
+						Files.copy(path, target, StandardCopyOption.REPLACE_EXISTING);
+					}
+				}
+			}
+			Files.createDirectories(outputDir.toPath());
+			var graph = new TemplateGraph(ModelIndex.read(getIndexFile().get().getAsFile()).values());
+			Files.write(new File(outputDir, WARMUP).toPath(), graph.warmupOrder());
+			getLogger().info("Precompiled " + groups.values().stream().mapToInt(List::size).sum() + " templates in " + groups.size() + " groups");
+		}
+
+		private static boolean isSource(Path path) {
+			var name = path.getFileName().toString();
+			return name.endsWith(".java") || name.endsWith(".kt");
+		}
+
+		@SuppressWarnings("unchecked")
+		private static Class<? extends WorkAction<PrecompileParameters>> loadPrecompileAction() {
+			return (Class<? extends WorkAction<PrecompileParameters>>) loadGlue(PRECOMPILE_ACTION);
+		}
+	}
+
+	private static Class<?> loadGlue(String className) {
+		try {
+			return Class.forName(className);
+		} catch (ClassNotFoundException e) {
+			throw new GradleException("Unable to find " + className, e);
 		}
 	}
+
+	/** Maps a template's path inside the input dir to the path of the `.kt` model class it renders to inside the output dir. */
+	static String targetPath(String normalizedPath) {
+		return normalizedPath.substring(0, normalizedPath.length() - 4) + ".kt";
+	}
+
+	/** A batch of templates for one work item, the content type is passed by name since `gg.jte.ContentType` isn't on our compile classpath. */
+	public interface RenderParameters extends WorkParameters {
+		DirectoryProperty getInputDir();
+
+		DirectoryProperty getOutputDir();
+
+		Property<String> getPackageName();
+
+		Property<String> getContentType();
+
+		Property<Boolean> getDirectRender();
+
+		/** Optional, see {@link RenderModelClassesTask#getModelCacheDir()}. */
+		DirectoryProperty getModelCacheDir();
+
+		ListProperty<String> getNormalizedPaths();
+
+		/** The hash of each model's current content, keyed by {@link #targetPath}, if the index has one. */
+		MapProperty<String, String> getKnownHashes();
+
+		/** Where to write the index entry of every model in this batch. */
+		RegularFileProperty getHashFile();
+	}
+
+	/** One group of templates for {@link PrecompileTemplatesTask}, the content type is passed by name for the same reason as in {@link RenderParameters}. */
+	public interface PrecompileParameters extends WorkParameters {
+		DirectoryProperty getInputDir();
+
+		/** Where jte writes this group's sources and classes, each group gets its own so that the workers never write the same file. */
+		DirectoryProperty getClassDir();
+
+		Property<String> getPackageName();
+
+		Property<String> getContentType();
+
+		Property<Boolean> getTrimControlStructures();
+
+		Property<Boolean> getHtmlCommentsPreserved();
+
+		Property<String[]> getHtmlTags();
+
+		Property<String> getHtmlPolicyClass();
+
+		Property<Boolean> getBinaryStaticContent();
+
+		Property<String[]> getCompileArgs();
+
+		Property<String[]> getKotlinCompileArgs();
+
+		/** The paths of the templates in this group, e.g. `pages/Home.jte`. */
+		ListProperty<String> getTemplateNames();
+
+		/** Passed to javac and kotlinc as their classpath. */
+		ConfigurableFileCollection getCompilePath();
+	}
 }
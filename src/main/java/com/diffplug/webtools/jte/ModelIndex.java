@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.jte;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Every generated model, keyed by its path inside the output directory. Models
+ * whose content hash hasn't changed are never rewritten, so their mtime stays
+ * put and `compileKotlin` has nothing to recompile. The index also remembers
+ * each model's template, which is what the aggregate registry is built from.
+ */
+class ModelIndex {
+	/** Not a `.kt` file, so the Kotlin compiler ignores it even though it lives in a source dir. */
+	static final String FILENAME = ".jte-models.index";
+	static final String REGISTRY_CLASS = "JteModelRegistry";
+	/** Keeps each generated registration function well below the JVM's 64KB method limit. */
+	private static final int REGISTRY_CHUNK = 256;
+
+	private ModelIndex() {}
+
+	static class Entry {
+		final String hash;
+		/** The path jte knows the template by, e.g. `pages/Home.jte`. */
+		final String templatePath;
+		/** The names of the templates it calls with `@template.name(...)`, e.g. `layout.page`. */
+		final List<String> calls;
+
+		Entry(String hash, String templatePath, List<String> calls) {
+			this.hash = hash;
+			this.templatePath = templatePath;
+			this.calls = calls;
+		}
+
+		/** e.g. `pages.Home` for `pages/Home.jte` */
+		String modelClass() {
+			return templatePath.substring(0, templatePath.lastIndexOf('.')).replace('/', '.');
+		}
+	}
+
+	/** Reads tab-separated `model hash template calls` lines, where calls are comma-separated, returns an empty index if there isn't one yet. */
+	static TreeMap<String, Entry> read(File file) throws IOException {
+		var index = new TreeMap<String, Entry>();
+		if (!file.isFile()) {
+			return index;
+		}
+		for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+			String[] fields = line.split("\t");
+			if (fields.length == 3) {
+				index.put(fields[0], new Entry(fields[1], fields[2], List.of()));
+			} else if (fields.length == 4) {
+				index.put(fields[0], new Entry(fields[1], fields[2], List.of(fields[3].split(","))));
+			}
+		}
+		return index;
+	}
+
+	/** Writes the index sorted by path, so that it is stable across builds. */
+	static void write(File file, Map<String, Entry> index) throws IOException {
+		var builder = new StringBuilder();
+		new TreeMap<>(index).forEach((path, entry) -> {
+			builder.append(path).append('\t').append(entry.hash).append('\t').append(entry.templatePath);
+			if (!entry.calls.isEmpty()) {
+				builder.append('\t').append(String.join(",", entry.calls));
+			}
+			builder.append('\n');
+		});
+		Files.write(file.toPath(), builder.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/** Writes the index into the output dir, along with the registry which is generated from it. */
+	static void writeWithRegistry(File outputDir, String packageName, Map<String, Entry> index) throws IOException {
+		write(new File(outputDir, FILENAME), index);
+		var registryFile = new File(outputDir, packageName.replace('.', '/') + "/" + REGISTRY_CLASS + ".kt");
+		writeIfChanged(registryFile, registry(packageName, index));
+	}
+
+	/** Writes the content only if it differs from what is already there, so that an unchanged file keeps its mtime. */
+	static void writeIfChanged(File file, String content) throws IOException {
+		byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+		if (!file.isFile() || !Arrays.equals(Files.readAllBytes(file.toPath()), bytes)) {
+			Files.createDirectories(file.getParentFile().toPath());
+			Files.write(file.toPath(), bytes);
+		}
+	}
+
+	static String hash(byte[] content) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Kotlin source for an object which maps every template path to its model's param names and constructor. */
+	static String registry(String packageName, Map<String, Entry> index) {
+		var entries = new TreeMap<String, Entry>();
+		index.values().forEach(entry -> entries.put(entry.templatePath, entry));
+		var builder = new StringBuilder();
+		builder.append("package " + packageName + "\n");
+		builder.append("\n");
+		builder.append("object " + REGISTRY_CLASS + " {\n");
+		builder.append("\tclass Entry(\n");
+		builder.append("\t\tval paramNames: Array<String>,\n");
+		builder.append("\t\tval create: (Array<Any?>) -> common.JteModel,\n");
+		builder.append("\t)\n");
+		builder.append("\n");
+		builder.append("\tval entries: Map<String, Entry> by lazy {\n");
+		builder.append("\t\tval map = HashMap<String, Entry>(" + (entries.size() * 4 / 3 + 1) + ")\n");
+		int chunks = (entries.size() + REGISTRY_CHUNK - 1) / REGISTRY_CHUNK;
+		for (int i = 0; i < chunks; ++i) {
+			builder.append("\t\tregister" + i + "(map)\n");
+		}
+		builder.append("\t\tmap\n");
+		builder.append("\t}\n");
+		builder.append("\n");
+		builder.append("\toperator fun get(templatePath: String): Entry? = entries[templatePath]\n");
+		int i = 0;
+		for (var entry : entries.values()) {
+			if (i % REGISTRY_CHUNK == 0) {
+				if (i > 0) {
+					builder.append("\t}\n");
+				}
+				builder.append("\n");
+				builder.append("\tprivate fun register" + (i / REGISTRY_CHUNK) + "(map: HashMap<String, Entry>) {\n");
+			}
+			var model = entry.modelClass();
+			builder.append("\t\tmap[\"" + entry.templatePath + "\"] = Entry(" + model + ".PARAM_NAMES) { " + model + ".create(it) }\n");
+			++i;
+		}
+		if (i > 0) {
+			builder.append("\t}\n");
+		}
+		builder.append("}\n");
+		return builder.toString();
+	}
+}
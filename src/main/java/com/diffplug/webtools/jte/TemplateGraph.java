@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.jte;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * The `@template` calls between templates, built from the {@link ModelIndex}
+ * which `jteModels` keeps up-to-date, so it costs nothing beyond reading the
+ * index. Templates are keyed by the path jte knows them by, e.g. `layout/page.jte`.
+ */
+class TemplateGraph {
+	private final SortedMap<String, SortedSet<String>> callees = new TreeMap<>();
+	private final SortedMap<String, SortedSet<String>> callers = new TreeMap<>();
+	/** Calls to templates which don't exist, by the path of the calling template. */
+	private final SortedMap<String, SortedSet<String>> missing = new TreeMap<>();
+
+	TemplateGraph(Collection<ModelIndex.Entry> entries) {
+		for (var entry : entries) {
+			callees.put(entry.templatePath, new TreeSet<>());
+			callers.put(entry.templatePath, new TreeSet<>());
+		}
+		for (var entry : entries) {
+			for (var call : entry.calls) {
+				var callee = resolve(call);
+				if (callee == null) {
+					missing.computeIfAbsent(entry.templatePath, unused -> new TreeSet<>()).add(call);
+				} else {
+					callees.get(entry.templatePath).add(callee);
+					callers.get(callee).add(entry.templatePath);
+				}
+			}
+		}
+	}
+
+	/** `layout.page` is either `layout/page.jte` or `layout/page.kte`. */
+	private String resolve(String call) {
+		var base = call.replace('.', '/');
+		for (var extension : List.of(".jte", ".kte")) {
+			if (callees.containsKey(base + extension)) {
+				return base + extension;
+			}
+		}
+		return null;
+	}
+
+	SortedSet<String> templates() {
+		return new TreeSet<>(callees.keySet());
+	}
+
+	SortedSet<String> callees(String templatePath) {
+		return callees.getOrDefault(templatePath, new TreeSet<>());
+	}
+
+	SortedMap<String, SortedSet<String>> missing() {
+		return missing;
+	}
+
+	/** The templates which no other template calls, so they can only be rendered from code. */
+	SortedSet<String> roots() {
+		var roots = new TreeSet<String>();
+		callers.forEach((template, templateCallers) -> {
+			if (templateCallers.isEmpty()) {
+				roots.add(template);
+			}
+		});
+		return roots;
+	}
+
+	/** The templates which can't be reached by following calls from any of the entry points. */
+	SortedSet<String> unreachableFrom(Predicate<String> isEntryPoint) {
+		var reached = new TreeSet<String>();
+		var queue = new ArrayDeque<String>();
+		for (var template : callees.keySet()) {
+			if (isEntryPoint.test(template)) {
+				reached.add(template);
+				queue.add(template);
+			}
+		}
+		while (!queue.isEmpty()) {
+			for (var callee : callees.get(queue.remove())) {
+				if (reached.add(callee)) {
+					queue.add(callee);
+				}
+			}
+		}
+		var unreachable = new TreeSet<>(callees.keySet());
+		unreachable.removeAll(reached);
+		return unreachable;
+	}
+
+	/**
+	 * Every template, the most widely used first, so that a warm-up which is cut short still
+	 * covers the most pages. A template is reachable from every template which reaches its
+	 * callers, plus those callers, so callees always come before their callers (except in a cycle).
+	 */
+	List<String> warmupOrder() {
+		Map<String, Integer> reachedFrom = new HashMap<>();
+		for (var template : callees.keySet()) {
+			var seen = new TreeSet<String>();
+			var queue = new ArrayDeque<String>();
+			queue.add(template);
+			while (!queue.isEmpty()) {
+				for (var caller : callers.get(queue.remove())) {
+					if (seen.add(caller)) {
+						queue.add(caller);
+					}
+				}
+			}
+			seen.remove(template);
+			reachedFrom.put(template, seen.size());
+		}
+		var order = new ArrayList<>(callees.keySet());
+		order.sort(Comparator.comparing((String template) -> reachedFrom.get(template)).reversed().thenComparing(Comparator.naturalOrder()));
+		return order;
+	}
+}
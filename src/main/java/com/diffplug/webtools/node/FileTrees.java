@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.node;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Predicate;
+
+/** Links and deletes trees of files which live in a machine-wide cache, without ever writing through a link into the cache. */
+class FileTrees {
+	private FileTrees() {}
+
+	/**
+	 * Makes `link` point at the `target` directory, replacing whatever was there. A symlink is
+	 * O(1), but needs privileges on Windows, so falls back to a tree of hard links, and then to
+	 * a copy if the two are on different volumes.
+	 */
+	static void link(Path target, Path link) throws IOException {
+		delete(link);
+		Files.createDirectories(link.getParent());
+		try {
+			Files.createSymbolicLink(link, target.toAbsolutePath());
+		} catch (UnsupportedOperationException | IOException e) {
+			hardLinkOrCopy(target, link);
+		}
+	}
+
+	/** Recreates the `source` tree at `dest`, with each file hard-linked if possible, otherwise copied, and returns how many files and links it has. */
+	static long hardLinkOrCopy(Path source, Path dest) throws IOException {
+		return recreate(source, dest, true, dir -> false);
+	}
+
+	/** Copies the `source` tree to `dest`, except for the directories which `skip` matches, and returns how many files and links it has. */
+	static long copy(Path source, Path dest, Predicate<Path> skip) throws IOException {
+		return recreate(source, dest, false, skip);
+	}
+
+	private static long recreate(Path source, Path dest, boolean link, Predicate<Path> skip) throws IOException {
+		long[] count = {0};
+		Files.walkFileTree(source, new SimpleFileVisitor<>() {
+			boolean canLink = link;
+
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				if (skip.test(dir)) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				Files.createDirectories(dest.resolve(source.relativize(dir).toString()));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				++count[0];
+				var destFile = dest.resolve(source.relativize(file).toString());
+				if (attrs.isSymbolicLink()) {
+					// e.g. `node_modules/.bin/*`, relative links stay valid in the new tree
+					Files.createSymbolicLink(destFile, Files.readSymbolicLink(file));
+					return FileVisitResult.CONTINUE;
+				}
+				if (canLink) {
+					try {
+						Files.createLink(destFile, file);
+						return FileVisitResult.CONTINUE;
+					} catch (UnsupportedOperationException | IOException e) {
+						// different volumes, or a filesystem without hard links, so don't bother trying again
+						canLink = false;
+					}
+				}
+				Files.copy(file, destFile, StandardCopyOption.COPY_ATTRIBUTES);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return count[0];
+	}
+
+	/**
+	 * Deletes the file, link or directory tree at `path`, if there is one. Links are deleted
+	 * rather than followed, and hard-linked files only lose this name, so the cache is untouched.
+	 */
+	static void delete(Path path) throws IOException {
+		if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+			return;
+		}
+		if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+			Files.delete(path);
+			return;
+		}
+		Files.walkFileTree(path, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				if (exc != null) {
+					throw exc;
+				}
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
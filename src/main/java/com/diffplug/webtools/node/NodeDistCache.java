@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.node;
+
+import com.diffplug.common.swt.os.OS;
+import com.github.eirslett.maven.plugins.frontend.lib.FrontendPluginFactory;
+import com.github.eirslett.maven.plugins.frontend.lib.ProxyConfig;
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A machine-wide cache of node distributions, shared by every project and every build,
+ * with one directory per node version, npm version and platform. Each is installed once,
+ * into a temporary directory which is then moved into place, so a half-finished install
+ * is never visible, and projects link to it rather than unpacking their own copy.
+ */
+class NodeDistCache {
+	/** `FileChannel.lock` is held per JVM, so builds in the same daemon also need to wait on each other. */
+	private static final ConcurrentHashMap<Path, Object> IN_PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+	private final File cacheDir;
+
+	NodeDistCache(File cacheDir) {
+		this.cacheDir = cacheDir;
+	}
+
+	/** Returns the `node` directory of the given version, which contains `node` and `npm`, installing it first if needed. */
+	File install(File workingDir, String nodeVersion, String npmVersion) throws Exception {
+		var key = nodeVersion + "-npm-" + npmVersion + "-" + OS.getNative().name().toLowerCase();
+		var dist = new File(cacheDir, key);
+		if (!dist.isDirectory()) {
+			withLock(new File(cacheDir, key + ".lock").toPath(), () -> {
+				// another build may have finished the install while we waited
+				if (!dist.isDirectory()) {
+					var tmp = Files.createTempDirectory(cacheDir.toPath(), key + ".tmp-");
+					try {
+						installInto(workingDir, tmp.toFile(), nodeVersion, npmVersion);
+						Files.move(tmp, dist.toPath(), StandardCopyOption.ATOMIC_MOVE);
+					} finally {
+						FileTrees.delete(tmp);
+					}
+				}
+				return null;
+			});
+		}
+		return new File(dist, "node");
+	}
+
+	private static void installInto(File workingDir, File installDir, String nodeVersion, String npmVersion) throws Exception {
+		new FrontendPluginFactory(workingDir, installDir).getNodeInstaller(new ProxyConfig(Collections.emptyList()))
+				.setNodeVersion(nodeVersion)
+				.setNpmVersion(npmVersion)
+				.install();
+		if (OS.getNative().isWindows()) {
+			// copy npm.cmd as a windows workaround
+			Files.copy(installDir.toPath().resolve("node/node_modules/npm/bin/npm.cmd"),
+					installDir.toPath().resolve("node/npm.cmd"),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+		// the downloaded archive is only needed to unpack it
+		FileTrees.delete(installDir.toPath().resolve("cache"));
+	}
+
+	/** Runs the action while holding an exclusive lock on the given file, against both other JVMs and other threads in this one. */
+	static <T> T withLock(Path lockFile, Callable<T> action) throws Exception {
+		Files.createDirectories(lockFile.getParent());
+		synchronized (IN_PROCESS_LOCKS.computeIfAbsent(lockFile.toAbsolutePath(), unused -> new Object())) {
+			try (var channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+					var lock = channel.lock()) {
+				return action.call();
+			}
+		}
+	}
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.node;
+
+import com.diffplug.common.swt.os.OS;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.MessageDigest;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A machine-wide store of installed `node_modules` trees, keyed by the digest of
+ * `package-lock.json` plus the node and npm versions and platform, since native modules
+ * are built against all of those. A tree is copied in after a successful `npm ci`, and
+ * restored from, so switching back to a lockfile which was installed before costs a
+ * directory walk rather than an `npm ci`. A restore skips the root project's own
+ * lifecycle scripts, which `npm ci` runs, so the caller runs {@link #rootLifecycleScripts} itself.
+ *
+ * Where the filesystem has POSIX permissions, the stored files are read-only and restored
+ * as hard links, so a tool which writes into `node_modules` in place gets an error rather
+ * than corrupting the store. Elsewhere, e.g. on Windows where a read-only file can't be
+ * deleted, they are restored as copies.
+ */
+class NodeModulesStore {
+	/** Written next to each stored tree once it is complete, with the number of files and links in it. */
+	private static final String COMPLETE = ".complete";
+
+	/** The root project's lifecycle scripts which `npm ci` runs, in the order it runs them. */
+	private static final List<String> ROOT_LIFECYCLE = List.of("preinstall", "install", "postinstall", "prepublish", "preprepare", "prepare", "postprepare");
+
+	private final File storeDir;
+
+	NodeModulesStore(File storeDir) {
+		this.storeDir = storeDir;
+	}
+
+	static String key(byte[] packageLockJson, String nodeVersion, String npmVersion) throws Exception {
+		var digest = MessageDigest.getInstance("SHA-256");
+		digest.update((nodeVersion + "\n" + npmVersion + "\n" + OS.getNative().name() + "\n").getBytes(StandardCharsets.UTF_8));
+		digest.update(packageLockJson);
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	/** The root lifecycle scripts which `package.json` defines, in the order that `npm ci` runs them. */
+	static List<String> rootLifecycleScripts(String packageJson) {
+		var scripts = new JsonKeys(packageJson).ofTopLevelObject("scripts");
+		return ROOT_LIFECYCLE.stream().filter(scripts::contains).toList();
+	}
+
+	/**
+	 * Replaces `nodeModules` with the stored tree and returns true, or returns false if there
+	 * isn't a complete one, in which case `nodeModules` needs an `npm ci`.
+	 */
+	boolean restore(String key, File nodeModules) throws Exception {
+		var stored = new File(storeDir, key);
+		long expected = fileCount(key);
+		if (expected < 0 || !stored.isDirectory()) {
+			return false;
+		}
+		FileTrees.delete(nodeModules.toPath());
+		long restored = isPosix()
+				? FileTrees.hardLinkOrCopy(stored.toPath(), nodeModules.toPath())
+				: FileTrees.copy(stored.toPath(), nodeModules.toPath(), dir -> false);
+		if (restored != expected) {
+			// someone deleted files from the store, so it gets replaced after the `npm ci`
+			FileTrees.delete(nodeModules.toPath());
+			Files.deleteIfExists(completeFile(key));
+			return false;
+		}
+		// the mtime is when it was last used, so that old trees are easy to find and delete
+		Files.setLastModifiedTime(stored.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+		return true;
+	}
+
+	/**
+	 * Stores a copy of a freshly installed tree, without `node_modules/.cache`, which tools write to
+	 * at build time. It only becomes visible to {@link #restore} once it is complete.
+	 */
+	void save(String key, File nodeModules) throws Exception {
+		if (fileCount(key) >= 0 || !nodeModules.isDirectory()) {
+			return;
+		}
+		var stored = new File(storeDir, key);
+		NodeDistCache.withLock(new File(storeDir, key + ".lock").toPath(), () -> {
+			if (fileCount(key) < 0) {
+				// left behind by a save which didn't finish, or by a failed restore
+				FileTrees.delete(stored.toPath());
+				var cacheDir = nodeModules.toPath().resolve(".cache");
+				var tmp = Files.createTempDirectory(storeDir.toPath(), key + ".tmp-");
+				try {
+					long count = FileTrees.copy(nodeModules.toPath(), tmp, cacheDir::equals);
+					if (isPosix()) {
+						makeReadOnly(tmp);
+					}
+					Files.move(tmp, stored.toPath(), StandardCopyOption.ATOMIC_MOVE);
+					var completeTmp = Files.createTempFile(storeDir.toPath(), key + ".tmp-", COMPLETE);
+					Files.writeString(completeTmp, Long.toString(count));
+					Files.move(completeTmp, completeFile(key), StandardCopyOption.ATOMIC_MOVE);
+				} finally {
+					FileTrees.delete(tmp);
+				}
+			}
+			return null;
+		});
+	}
+
+	private Path completeFile(String key) {
+		return storeDir.toPath().resolve(key + COMPLETE);
+	}
+
+	/** The number of files and links in the stored tree, or -1 if it isn't complete. */
+	private long fileCount(String key) {
+		try {
+			return Long.parseLong(Files.readString(completeFile(key)).trim());
+		} catch (IOException | NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static boolean isPosix() {
+		return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+	}
+
+	/** Removes the write permissions from every file, but not the directories, so that the tree can still be deleted. */
+	private static void makeReadOnly(Path tree) throws IOException {
+		Files.walkFileTree(tree, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if (attrs.isRegularFile()) {
+					var permissions = Files.getPosixFilePermissions(file);
+					permissions.removeAll(EnumSet.of(PosixFilePermission.OWNER_WRITE, PosixFilePermission.GROUP_WRITE, PosixFilePermission.OTHERS_WRITE));
+					Files.setPosixFilePermissions(file, permissions);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/** Just enough of a JSON reader to list the keys of a top-level object, throws {@link IllegalArgumentException} if the JSON is malformed. */
+	private static class JsonKeys {
+		private final String json;
+		private int i;
+
+		JsonKeys(String json) {
+			this.json = json;
+		}
+
+		/** The keys of the named top-level object, or none if it isn't there. */
+		Set<String> ofTopLevelObject(String name) {
+			var keys = new HashSet<String>();
+			skipWhitespace();
+			object(key -> {
+				if (key.equals(name) && peek() == '{') {
+					object(inner -> {
+						keys.add(inner);
+						value();
+					});
+				} else {
+					value();
+				}
+			});
+			skipWhitespace();
+			if (i != json.length()) {
+				throw new IllegalArgumentException("Unexpected content at " + i);
+			}
+			return keys;
+		}
+
+		private interface Member {
+			/** Reads the member's value, which starts at the current position. */
+			void read(String key);
+		}
+
+		private void object(Member member) {
+			expect('{');
+			skipWhitespace();
+			if (peek() == '}') {
+				++i;
+				return;
+			}
+			while (true) {
+				skipWhitespace();
+				String key = string();
+				skipWhitespace();
+				expect(':');
+				skipWhitespace();
+				member.read(key);
+				skipWhitespace();
+				if (peek() == '}') {
+					++i;
+					return;
+				}
+				expect(',');
+			}
+		}
+
+		private void value() {
+			char c = peek();
+			if (c == '{') {
+				object(key -> value());
+			} else if (c == '[') {
+				++i;
+				skipWhitespace();
+				if (peek() == ']') {
+					++i;
+					return;
+				}
+				while (true) {
+					skipWhitespace();
+					value();
+					skipWhitespace();
+					if (peek() == ']') {
+						++i;
+						return;
+					}
+					expect(',');
+				}
+			} else if (c == '"') {
+				string();
+			} else {
+				// a number, true, false or null
+				int start = i;
+				while (i < json.length() && "{}[],: \t\r\n\"".indexOf(json.charAt(i)) == -1) {
+					++i;
+				}
+				if (i == start) {
+					throw new IllegalArgumentException("Expected a value at " + i);
+				}
+			}
+		}
+
+		private String string() {
+			expect('"');
+			var builder = new StringBuilder();
+			while (true) {
+				char c = next();
+				if (c == '"') {
+					return builder.toString();
+				} else if (c != '\\') {
+					builder.append(c);
+				} else {
+					char escaped = next();
+					switch (escaped) {
+					case 'b':
+						builder.append('\b');
+						break;
+					case 'f':
+						builder.append('\f');
+						break;
+					case 'n':
+						builder.append('\n');
+						break;
+					case 'r':
+						builder.append('\r');
+						break;
+					case 't':
+						builder.append('\t');
+						break;
+					case 'u':
+						if (i + 4 > json.length()) {
+							throw new IllegalArgumentException("Truncated escape at " + i);
+						}
+						try {
+							builder.append((char) Integer.parseInt(json.substring(i, i + 4), 16));
+						} catch (NumberFormatException e) {
+							throw new IllegalArgumentException("Bad escape at " + i, e);
+						}
+						i += 4;
+						break;
+					default:
+						builder.append(escaped);
+					}
+				}
+			}
+		}
+
+		private void skipWhitespace() {
+			while (i < json.length() && " \t\r\n".indexOf(json.charAt(i)) != -1) {
+				++i;
+			}
+		}
+
+		private char peek() {
+			if (i == json.length()) {
+				throw new IllegalArgumentException("Unexpected end of JSON");
+			}
+			return json.charAt(i);
+		}
+
+		private char next() {
+			char c = peek();
+			++i;
+			return c;
+		}
+
+		private void expect(char expected) {
+			if (next() != expected) {
+				throw new IllegalArgumentException("Expected '" + expected + "' at " + (i - 1));
+			}
+		}
+	}
+}
@@ -19,10 +19,9 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Objects;
 import java.util.TreeMap;
+import javax.inject.Inject;
 import org.gradle.api.*;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.provider.Property;
@@ -32,6 +31,7 @@ import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.TaskProvider;
 import org.gradle.work.DisableCachingByDefault;
+import org.gradle.workers.WorkerExecutor;
 import webtools.Env;
 
 /**
@@ -64,11 +64,17 @@ public class NodePlugin implements Plugin<Project> {
 				try {
 					setup.nodeVersion = nvmRc(findNvmRc(project.getProjectDir()));
 					setup.npmVersion = "provided";
+					setup.nodeCacheDir = new File(project.getGradle().getGradleUserHomeDir(), "caches/webtools/node");
+					setup.nodeModulesStoreDir = new File(project.getGradle().getGradleUserHomeDir(), "caches/webtools/node_modules");
 				} catch (IOException e) {
 					throw new RuntimeException(e);
 				}
 
 				task.getSetup().set(setup);
+				var npmRunService = NpmRunService.register(project);
+				task.usesService(npmRunService);
+				task.getNpmRunService().set(npmRunService);
+				task.getWarm().convention(false);
 				task.getProjectDir().set(project.getProjectDir());
 				task.getInputs().file("package.json").withPathSensitivity(PathSensitivity.RELATIVE);
 				task.getInputs().file("package-lock.json").withPathSensitivity(PathSensitivity.RELATIVE);
@@ -102,18 +108,39 @@ public class NodePlugin implements Plugin<Project> {
 		@Internal
 		public abstract DirectoryProperty getProjectDir();
 
+		/**
+		 * If true, the script is started by a node worker which this project's warm tasks share for the
+		 * rest of the build, so a build pays for one worker start per project rather than one npm CLI
+		 * start per task. The worker doesn't outlive the build, and the script still gets its own shell
+		 * and node. It runs the `pre` and `post` scripts like `npm run`, but doesn't set every `npm_*`
+		 * variable that npm does.
+		 */
+		@Internal
+		public abstract Property<Boolean> getWarm();
+
+		@Internal
+		abstract Property<NpmRunService> getNpmRunService();
+
+		@Inject
+		protected abstract WorkerExecutor getWorkerExecutor();
+
 		@TaskAction
 		public void npmCiRunTask() throws Exception {
 			SetupCleanupNode setup = getSetup().get();
 			File projectDir = getProjectDir().get().getAsFile();
-			// install node, npm, and package-lock.json
+			// install node, npm, and package-lock.json, which only waits on other tasks of this project
 			setup.start(projectDir);
 
-			// Use the new executeNpmCommand method
-			List<String> commandArgs = new ArrayList<>();
-			commandArgs.add("run");
-			commandArgs.add(npmTaskName);
-			setup.executeNpmCommand(commandArgs, environment);
+			// the script itself runs as work, so that other tasks of this project can run too
+			getWorkerExecutor().noIsolation().submit(NpmRunAction.class, parameters -> {
+				parameters.getSetup().set(setup);
+				parameters.getNpmTaskName().set(npmTaskName);
+				parameters.getEnvironment().set(environment);
+				parameters.getTaskPath().set(getPath());
+				parameters.getWarm().set(getWarm());
+				parameters.getNpmRunService().set(getNpmRunService());
+				parameters.getProjectDir().set(getProjectDir());
+			});
 		}
 	}
 
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.node;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A node process for one project, which starts npm scripts on request, so that the warm `npm_run`
+ * tasks of a build share one start of it instead of each booting the npm CLI. It is stopped at the
+ * end of the build, so the next build starts it again. The scripts themselves still run in a shell,
+ * with their own node process. The protocol is described at the top of `npm-worker.js`,
+ * several scripts can run at once, and their output is told apart by the invocation's id.
+ */
+class NodeWorker implements AutoCloseable {
+	static final String SCRIPT = "npm-worker.js";
+	/** `npm-worker.js` splits longer lines of output, so that each response fits in {@link OutputCapture#MAX_LINE_CHARS}. */
+	static final int MAX_PAYLOAD_CHARS = 16 * 1024;
+
+	private final Process process;
+	private final Writer stdin;
+	private final Map<Integer, Invocation> running = new ConcurrentHashMap<>();
+	private final AtomicInteger nextId = new AtomicInteger();
+	/** Set once the worker's stdout has ended, before failing what was running then. */
+	private volatile boolean gone;
+
+	/** The process must run {@link #SCRIPT} in the project's directory. */
+	NodeWorker(ProcessBuilder processBuilder) throws IOException {
+		process = processBuilder.start();
+		stdin = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+		Thread.ofVirtual().name("npm-worker-stdout").start(this::readResponses);
+		// the worker itself only writes to stderr if it crashes, which ends every invocation anyway
+		Thread.ofVirtual().name("npm-worker-stderr").start(() -> {
+			try {
+				OutputCapture.readLines(process.getErrorStream(), line -> {
+					for (var invocation : running.values()) {
+						invocation.capture.stderr(line);
+					}
+				});
+			} catch (IOException e) {
+				// the worker is gone, which readResponses reports
+			}
+		});
+	}
+
+	private static class Invocation {
+		final OutputCapture capture;
+		final Consumer<String> onLine;
+		final CompletableFuture<Integer> exitCode = new CompletableFuture<>();
+
+		Invocation(OutputCapture capture, Consumer<String> onLine) {
+			this.capture = capture;
+			this.onLine = onLine;
+		}
+	}
+
+	boolean isAlive() {
+		return !gone && process.isAlive();
+	}
+
+	/** Runs the script and returns its exit code, with its output going to `capture` and `onLine`. */
+	int run(String script, Map<String, String> environment, OutputCapture capture, Consumer<String> onLine) throws Exception {
+		int id = nextId.incrementAndGet();
+		var invocation = new Invocation(capture, onLine);
+		running.put(id, invocation);
+		try {
+			if (gone) {
+				throw new IOException("The npm worker has exited");
+			}
+			var request = new StringBuilder().append("{\"id\":").append(id).append(",\"script\":");
+			json(request, script);
+			request.append(",\"env\":{");
+			boolean first = true;
+			for (var entry : environment.entrySet()) {
+				if (!first) {
+					request.append(',');
+				}
+				first = false;
+				json(request, entry.getKey());
+				request.append(':');
+				json(request, entry.getValue());
+			}
+			request.append("}}\n");
+			synchronized (stdin) {
+				stdin.write(request.toString());
+				stdin.flush();
+			}
+			return invocation.exitCode.get();
+		} finally {
+			running.remove(id);
+		}
+	}
+
+	private void readResponses() {
+		try {
+			OutputCapture.readLines(process.getInputStream(), this::handleResponse);
+		} catch (IOException | RuntimeException e) {
+			// fall through and fail whatever is still running
+		}
+		gone = true;
+		var exited = new IOException("The npm worker exited unexpectedly");
+		running.values().forEach(invocation -> invocation.exitCode.completeExceptionally(exited));
+	}
+
+	/** `id \t kind \t payload`, where the payload is the rest of the line, tabs and all, and at most {@link #MAX_PAYLOAD_CHARS}. */
+	private void handleResponse(String line) {
+		String[] fields = line.split("\t", 3);
+		var invocation = fields.length == 3 && isId(fields[0]) ? running.get(Integer.parseInt(fields[0])) : null;
+		if (invocation == null) {
+			return;
+		}
+		switch (fields[1]) {
+		case "out":
+			invocation.capture.stdout(fields[2]);
+			invocation.onLine.accept(fields[2]);
+			break;
+		case "err":
+			invocation.capture.stderr(fields[2]);
+			invocation.onLine.accept(fields[2]);
+			break;
+		case "exit":
+			invocation.exitCode.complete(Integer.parseInt(fields[2]));
+			break;
+		}
+	}
+
+	private static boolean isId(String field) {
+		return !field.isEmpty() && field.length() < 10 && field.chars().allMatch(c -> c >= '0' && c <= '9');
+	}
+
+	private static void json(StringBuilder builder, String value) {
+		builder.append('"');
+		for (int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				builder.append("\\\"");
+				break;
+			case '\\':
+				builder.append("\\\\");
+				break;
+			default:
+				if (c < 0x20) {
+					builder.append(String.format("\\u%04x", (int) c));
+				} else {
+					builder.append(c);
+				}
+			}
+		}
+		builder.append('"');
+	}
+
+	/** Closing stdin tells the worker to exit, and anything it started is stopped along with it. */
+	@Override
+	public void close() throws IOException {
+		process.descendants().forEach(ProcessHandle::destroy);
+		try {
+			stdin.close();
+		} finally {
+			process.destroy();
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.node;
+
+import java.util.List;
+import java.util.function.Consumer;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * Runs one npm script on a Gradle worker thread, so that the other `npm_run` tasks of the same
+ * project can run alongside it. Each line of output is logged at info level as it arrives,
+ * prefixed with the task's path, so the output of concurrent scripts can be told apart.
+ */
+public abstract class NpmRunAction implements WorkAction<NpmRunAction.Parameters> {
+	private static final Logger LOGGER = Logging.getLogger(NpmRunAction.class);
+
+	public interface Parameters extends WorkParameters {
+		/** Already started, so node is installed and `npm ci` has run. */
+		Property<SetupCleanupNode> getSetup();
+
+		Property<String> getNpmTaskName();
+
+		MapProperty<String, String> getEnvironment();
+
+		Property<String> getTaskPath();
+
+		/** If true, runs the script on the project's {@link NodeWorker} instead of a fresh npm. */
+		Property<Boolean> getWarm();
+
+		Property<NpmRunService> getNpmRunService();
+
+		DirectoryProperty getProjectDir();
+	}
+
+	@Override
+	public void execute() {
+		var parameters = getParameters();
+		var prefix = "[" + parameters.getTaskPath().get() + "] ";
+		var setup = parameters.getSetup().get();
+		Consumer<String> onLine = line -> LOGGER.info(prefix + line);
+		try {
+			if (parameters.getWarm().get()) {
+				var worker = parameters.getNpmRunService().get().worker(parameters.getProjectDir().get().getAsFile(), setup);
+				setup.runScript(worker, parameters.getNpmTaskName().get(), parameters.getEnvironment().get(), onLine);
+			} else {
+				setup.executeNpmCommand(List.of("run", parameters.getNpmTaskName().get()), parameters.getEnvironment().get(), onLine);
+			}
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.node;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import org.gradle.api.Project;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * Limits how many `npm_run` tasks run at once across the whole build, since each one is
+ * a node process which may well use several cores itself. Every `npm_run` task uses this
+ * service, and Gradle won't start one beyond `maxParallelUsages`.
+ *
+ * Also owns the {@link NodeWorker} of each project with `warm` tasks, which is started by the
+ * first of them and closed with this service at the end of the build.
+ */
+public abstract class NpmRunService implements BuildService<BuildServiceParameters.None>, AutoCloseable {
+	private static final String NAME = "webtoolsNpmRun";
+	/** A Gradle property, e.g. in `gradle.properties`, which defaults to the number of processors. */
+	static final String MAX_PARALLEL = "webtools.npm.maxParallel";
+
+	static Provider<NpmRunService> register(Project project) {
+		int maxParallel = project.getProviders().gradleProperty(MAX_PARALLEL).map(Integer::parseInt)
+				.getOrElse(Runtime.getRuntime().availableProcessors());
+		return project.getGradle().getSharedServices().registerIfAbsent(NAME, NpmRunService.class, spec -> {
+			spec.getMaxParallelUsages().set(maxParallel);
+		});
+	}
+
+	/** Keyed by project dir. */
+	private final Map<File, NodeWorker> workers = new HashMap<>();
+
+	/** Returns the project's worker, starting it if there isn't one yet, or if the last one died. */
+	synchronized NodeWorker worker(File projectDir, SetupCleanupNode setup) throws IOException {
+		var worker = workers.get(projectDir);
+		if (worker == null || !worker.isAlive()) {
+			worker = setup.startWorker();
+			workers.put(projectDir, worker);
+		}
+		return worker;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		for (var worker : workers.values()) {
+			worker.close();
+		}
+		workers.clear();
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.node;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Captures a process's output in bounded memory, however much it prints. Every line goes
+ * to a log file as it arrives, and only the last {@link #TAIL_CHARS} of each stream are
+ * kept in memory, to show inline if the process fails. A line longer than
+ * {@link #MAX_LINE_CHARS}, e.g. a minified bundle printed without a newline, arrives in pieces. Each stream is drained by its own
+ * virtual thread, so a chatty process never ties up a shared pool.
+ */
+class OutputCapture implements AutoCloseable {
+	/** How much of each stream is kept in memory, roughly 64KB of UTF-16. */
+	static final int TAIL_CHARS = 32 * 1024;
+	/** The longest piece of a line which is held in memory at once. */
+	static final int MAX_LINE_CHARS = TAIL_CHARS;
+
+	private final File logFile;
+	private final Writer log;
+	private final Tail stdout = new Tail();
+	private final Tail stderr = new Tail();
+	private final List<Thread> readers = new ArrayList<>();
+	private volatile IOException logError;
+
+	OutputCapture(File logFile) throws IOException {
+		this.logFile = logFile;
+		Files.createDirectories(logFile.getParentFile().toPath());
+		this.log = Files.newBufferedWriter(logFile.toPath(), StandardCharsets.UTF_8);
+	}
+
+	File logFile() {
+		return logFile;
+	}
+
+	/** Starts draining both of the process's streams, passing each line to `onLine` as well. */
+	void read(Process process, Consumer<String> onLine) {
+		readers.add(read(process.getInputStream(), stdout, "stdout", onLine));
+		readers.add(read(process.getErrorStream(), stderr, "stderr", onLine));
+	}
+
+	/** Captures a line of stdout which arrived some other way, e.g. from a {@link NodeWorker}. */
+	void stdout(String line) {
+		stdout.add(line);
+		writeLog(line);
+	}
+
+	/** Captures a line of stderr which arrived some other way. */
+	void stderr(String line) {
+		stderr.add(line);
+		writeLog(line);
+	}
+
+	private Thread read(InputStream inputStream, Tail tail, String streamName, Consumer<String> onLine) {
+		return Thread.ofVirtual().name("npm-" + streamName).start(() -> {
+			try {
+				readLines(inputStream, line -> {
+					tail.add(line);
+					onLine.accept(line);
+					writeLog(line);
+				});
+			} catch (IOException e) {
+				tail.add("Error reading " + streamName + ": " + e.getMessage());
+			}
+		});
+	}
+
+	/**
+	 * Reads the stream line by line, like `BufferedReader.readLine`, except that a line longer than
+	 * {@link #MAX_LINE_CHARS} is passed on in pieces rather than buffered whole.
+	 */
+	static void readLines(InputStream inputStream, Consumer<String> onLine) throws IOException {
+		try (var reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+			char[] buffer = new char[8 * 1024];
+			var line = new StringBuilder();
+			boolean afterCr = false;
+			// true if the current line was just passed on in pieces, so its newline doesn't add an empty line
+			boolean split = false;
+			int read;
+			while ((read = reader.read(buffer)) != -1) {
+				for (int i = 0; i < read; ++i) {
+					char c = buffer[i];
+					boolean crlf = afterCr && c == '\n';
+					afterCr = c == '\r';
+					if (crlf) {
+						continue;
+					} else if (c == '\n' || c == '\r') {
+						if (line.length() > 0 || !split) {
+							onLine.accept(line.toString());
+						}
+						line.setLength(0);
+						split = false;
+					} else {
+						line.append(c);
+						// never between the two halves of a surrogate pair
+						if (line.length() >= MAX_LINE_CHARS && !Character.isHighSurrogate(c)) {
+							onLine.accept(line.toString());
+							line.setLength(0);
+							split = true;
+						}
+					}
+				}
+			}
+			if (line.length() > 0) {
+				onLine.accept(line.toString());
+			}
+		}
+	}
+
+	/** Stops logging if the log can't be written, e.g. a full disk, but keeps draining the process so that it doesn't block. */
+	private void writeLog(String line) {
+		if (logError == null) {
+			try {
+				// a single write per line, so that lines from the two streams never interleave mid-line
+				log.write(line + "\n");
+			} catch (IOException e) {
+				logError = e;
+			}
+		}
+	}
+
+	/** Waits until both streams have been read to the end, which happens once the process exits. */
+	void await() throws InterruptedException {
+		for (var reader : readers) {
+			reader.join();
+		}
+	}
+
+	/** Appends the tail of stdout and then stderr, noting how many lines were dropped from each. */
+	void appendTails(StringBuilder builder) {
+		stdout.appendTo(builder);
+		stderr.appendTo(builder);
+		if (logError != null) {
+			builder.append("Error writing ").append(logFile).append(": ").append(logError.getMessage()).append('\n');
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		log.close();
+	}
+
+	/** The last lines of one stream, whose total length is at most {@link #TAIL_CHARS}. */
+	private class Tail {
+		private final ArrayDeque<String> lines = new ArrayDeque<>();
+		private int chars;
+		private long dropped;
+
+		synchronized void add(String line) {
+			if (line.length() > TAIL_CHARS) {
+				line = line.substring(line.length() - TAIL_CHARS);
+			}
+			lines.add(line);
+			chars += line.length();
+			while (chars > TAIL_CHARS) {
+				chars -= lines.remove().length();
+				++dropped;
+			}
+		}
+
+		synchronized void appendTo(StringBuilder builder) {
+			if (dropped > 0) {
+				builder.append("... ").append(dropped).append(" earlier lines, see the full log\n");
+			}
+			for (var line : lines) {
+				builder.append(line).append('\n');
+			}
+		}
+	}
+}
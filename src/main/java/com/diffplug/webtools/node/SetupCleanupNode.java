@@ -17,30 +17,25 @@ package com.diffplug.webtools.node;
 
 import com.diffplug.common.swt.os.OS;
 import com.diffplug.webtools.SetupCleanup;
-import com.github.eirslett.maven.plugins.frontend.lib.FrontendPluginFactory;
-import com.github.eirslett.maven.plugins.frontend.lib.InstallationException;
-import com.github.eirslett.maven.plugins.frontend.lib.ProxyConfig;
-import com.github.eirslett.maven.plugins.frontend.lib.TaskRunnerException;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import org.gradle.api.GradleException;
 
 class SetupCleanupNode implements Serializable {
 	public String nodeVersion;
 	public String npmVersion;
+	/** The machine-wide {@link NodeDistCache}, which `build/node-install/node` links into. */
+	public File nodeCacheDir;
+	/** The machine-wide {@link NodeModulesStore}, which `node_modules` is restored from when its lockfile was installed before. */
+	public File nodeModulesStoreDir;
 	private File workingDir, installDir;
-	@SuppressWarnings("unused") // used for serialized equality
 	private byte[] packageLockJson;
 
 	public void start(File projectDir) throws Exception {
@@ -50,10 +45,6 @@ class SetupCleanupNode implements Serializable {
 		new Impl().start(keyFile(projectDir), this);
 	}
 
-	FrontendPluginFactory factory() {
-		return new FrontendPluginFactory(workingDir, installDir);
-	}
-
 	private static File keyFile(File projectDir) {
 		return new File(projectDir, "build/node_modules/.gradle-state");
 	}
@@ -68,6 +59,11 @@ class SetupCleanupNode implements Serializable {
 	}
 
 	public void executeNpmCommand(List<String> commandArgs, Map<String, String> environment) throws Exception {
+		executeNpmCommand(commandArgs, environment, line -> {});
+	}
+
+	/** Same as {@link #executeNpmCommand(List, Map)}, but also passes each line of stdout and stderr to `onLine` as it arrives. */
+	public void executeNpmCommand(List<String> commandArgs, Map<String, String> environment, Consumer<String> onLine) throws Exception {
 		// Use ProcessBuilder for direct console output instead of NpmRunner
 		File npmExe;
 		if (System.getProperty("os.name").toLowerCase().contains("win")) {
@@ -87,45 +83,52 @@ class SetupCleanupNode implements Serializable {
 		processBuilder.environment().putAll(environment);
 		Process process = processBuilder.start();
 
-		// Buffer output to only show on failure
-		List<String> stdoutLines = new ArrayList<>();
-		List<String> stderrLines = new ArrayList<>();
-
-		// Create threads to read stdout and stderr concurrently
-		CompletableFuture<Void> stdoutFuture = readStream(process.getInputStream(), stdoutLines, "stdout");
-		CompletableFuture<Void> stderrFuture = readStream(process.getErrorStream(), stderrLines, "stderr");
-		int exitCode = process.waitFor();
-		CompletableFuture.allOf(stdoutFuture, stderrFuture).join();
-		if (exitCode == 0) {
-			return;
+		// only the tail of the output stays in memory, to show on failure, the rest goes to the log
+		try (var capture = new OutputCapture(logFile(commandArgs))) {
+			capture.read(process, onLine);
+			int exitCode = process.waitFor();
+			capture.await();
+			if (exitCode != 0) {
+				throw failure(commandArgs, environment, capture);
+			}
 		}
+	}
 
-		var cmd = new StringBuilder().append("> npm ").append(String.join(" ", commandArgs)).append(" FAILED\n");
-		environment.forEach((key, value) -> cmd.append("  env ").append(key).append("=").append(value).append("\n"));
-		for (String line : stdoutLines) {
-			cmd.append(line).append("\n");
-		}
-		for (String line : stderrLines) {
-			cmd.append(line).append("\n");
+	/** Starts a {@link NodeWorker} for this project, which must already be {@link #start started}. */
+	NodeWorker startWorker() throws IOException {
+		var script = new File(installDir, NodeWorker.SCRIPT);
+		try (var content = SetupCleanupNode.class.getResourceAsStream(NodeWorker.SCRIPT)) {
+			Files.write(script.toPath(), content.readAllBytes());
 		}
-		throw new GradleException(cmd.toString());
+		var node = new File(installDir, OS.getNative().isWindows() ? "node/node.exe" : "node/node");
+		ProcessBuilder processBuilder = new ProcessBuilder(node.getAbsolutePath(), script.getAbsolutePath());
+		processBuilder.directory(workingDir);
+		addNodeToPath(processBuilder, installDir);
+		return new NodeWorker(processBuilder);
 	}
 
-	private static CompletableFuture<Void> readStream(InputStream inputStream, List<String> outputLines, String streamName) {
-		return CompletableFuture.runAsync(() -> {
-			try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
-				String line;
-				while ((line = reader.readLine()) != null) {
-					synchronized (outputLines) {
-						outputLines.add(line);
-					}
-				}
-			} catch (IOException e) {
-				synchronized (outputLines) {
-					outputLines.add("Error reading " + streamName + ": " + e.getMessage());
-				}
+	/** Same as {@link #executeNpmCommand(List, Map, Consumer)} for `run script`, but on a warm worker rather than a fresh npm. */
+	void runScript(NodeWorker worker, String script, Map<String, String> environment, Consumer<String> onLine) throws Exception {
+		var commandArgs = List.of("run", script);
+		try (var capture = new OutputCapture(logFile(commandArgs))) {
+			if (worker.run(script, environment, capture, onLine) != 0) {
+				throw failure(commandArgs, environment, capture);
 			}
-		});
+		}
+	}
+
+	private static GradleException failure(List<String> commandArgs, Map<String, String> environment, OutputCapture capture) {
+		var cmd = new StringBuilder().append("> npm ").append(String.join(" ", commandArgs)).append(" FAILED\n");
+		environment.forEach((key, value) -> cmd.append("  env ").append(key).append("=").append(value).append("\n"));
+		capture.appendTails(cmd);
+		cmd.append("Full log: ").append(capture.logFile()).append("\n");
+		return new GradleException(cmd.toString());
+	}
+
+	/** e.g. `build/npm-logs/run-build.log` for `npm run build`, rewritten by each run. */
+	private File logFile(List<String> commandArgs) {
+		var name = String.join("-", commandArgs).replaceAll("[^A-Za-z0-9._-]", "_");
+		return new File(workingDir, "build/npm-logs/" + name + ".log");
 	}
 
 	private static void addNodeToPath(ProcessBuilder processBuilder, File installDir) {
@@ -142,25 +145,35 @@ class SetupCleanupNode implements Serializable {
 	}
 
 	private static class Impl extends SetupCleanup<SetupCleanupNode> {
+		/** Each project installs into its own directories, and the machine-wide caches have their own file locks. */
+		@Override
+		protected boolean lockPerKeyFile() {
+			return true;
+		}
+
 		@Override
-		protected void doStart(SetupCleanupNode key) throws TaskRunnerException, InstallationException, Exception {
-			ProxyConfig proxyConfig = new ProxyConfig(Collections.emptyList());
-			FrontendPluginFactory factory = key.factory();
-			factory.getNodeInstaller(proxyConfig)
-					.setNodeVersion(key.nodeVersion)
-					.setNpmVersion(key.npmVersion)
-					.install();
-			if (OS.getNative().isWindows()) {
-				// copy npm.cmd as a windows workaround
-				try {
-					Files.copy(key.installDir.toPath().resolve("node/node_modules/npm/bin/npm.cmd"),
-							key.installDir.toPath().resolve("node/npm.cmd"),
-							StandardCopyOption.REPLACE_EXISTING);
-				} catch (IOException e) {
-					throw new RuntimeException(e);
+		protected void doStart(SetupCleanupNode key) throws Exception {
+			File node = new NodeDistCache(key.nodeCacheDir).install(key.workingDir, key.nodeVersion, key.npmVersion);
+			FileTrees.link(node.toPath(), key.installDir.toPath().resolve("node"));
+			var store = new NodeModulesStore(key.nodeModulesStoreDir);
+			var storeKey = NodeModulesStore.key(key.packageLockJson, key.nodeVersion, key.npmVersion);
+			var nodeModules = new File(key.workingDir, "node_modules");
+			List<String> lifecycleScripts;
+			try {
+				lifecycleScripts = NodeModulesStore.rootLifecycleScripts(Files.readString(key.workingDir.toPath().resolve("package.json")));
+			} catch (IllegalArgumentException e) {
+				// let `npm ci` report what's wrong with it
+				lifecycleScripts = null;
+			}
+			if (lifecycleScripts != null && store.restore(storeKey, nodeModules)) {
+				// `npm ci` would have run these, `--ignore-scripts` stops npm from also running the `pre` and `post` of each
+				for (String script : lifecycleScripts) {
+					key.executeNpmCommand("run-script", "--ignore-scripts", script);
 				}
+			} else {
+				key.executeNpmCommand("ci");
+				store.save(storeKey, nodeModules);
 			}
-			key.executeNpmCommand("ci");
 		}
 
 		@Override
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A size-bounded, least-recently-used cache of file contents, along with
+ * their gzip and brotli variants. Entries are revalidated against the file's
+ * size and last-modified time on every lookup, so a stale entry is never served.
+ */
+class AssetCache {
+	/** Files larger than this fraction of the cache are never cached. */
+	private static final int MAX_ENTRY_FRACTION = 8;
+
+	private final long maxBytes;
+	private final Function<String, String> mimeTypes;
+	private final LinkedHashMap<Path, Asset> entries = new LinkedHashMap<>(256, 0.75f, true);
+	private long totalBytes;
+	/** Lookups served from memory, and lookups which had to read the file. */
+	final LongAdder hits = new LongAdder(), misses = new LongAdder();
+
+	AssetCache(long maxBytes, Function<String, String> mimeTypes) {
+		this.maxBytes = maxBytes;
+		this.mimeTypes = mimeTypes;
+	}
+
+	/** A cached file, along with whichever compressed variants are smaller than the original. */
+	static class Asset {
+		final String contentType;
+		final long lastModified;
+		final long size;
+		final byte[] identity;
+		final byte[] gzip;
+		final byte[] brotli;
+
+		Asset(String contentType, long lastModified, long size, byte[] identity, byte[] gzip, byte[] brotli) {
+			this.contentType = contentType;
+			this.lastModified = lastModified;
+			this.size = size;
+			this.identity = identity;
+			this.gzip = gzip;
+			this.brotli = brotli;
+		}
+
+		long weight() {
+			return identity.length + (gzip == null ? 0 : gzip.length) + (brotli == null ? 0 : brotli.length);
+		}
+
+		/** Returns the bytes for the given encoding, or null if we don't have that variant. */
+		byte[] bytesFor(Encoding encoding) {
+			switch (encoding) {
+			case BROTLI:
+				return brotli;
+			case GZIP:
+				return gzip;
+			default:
+				return identity;
+			}
+		}
+	}
+
+	/** Returns the cached asset for the given regular file, or null if it is too big to cache. */
+	Asset get(Path file, BasicFileAttributes attrs) throws IOException {
+		long lastModified = attrs.lastModifiedTime().toMillis();
+		synchronized (this) {
+			Asset cached = entries.get(file);
+			if (cached != null && cached.lastModified == lastModified && cached.size == attrs.size()) {
+				hits.increment();
+				return cached;
+			}
+		}
+		misses.increment();
+		if (attrs.size() > maxBytes / MAX_ENTRY_FRACTION) {
+			return null;
+		}
+		Asset asset = load(file, attrs);
+		put(file, asset);
+		return asset;
+	}
+
+	/** Drops every entry which is one of the given paths, or is inside one of them. */
+	synchronized void invalidate(Set<Path> changed) {
+		var iter = entries.entrySet().iterator();
+		while (iter.hasNext()) {
+			Map.Entry<Path, Asset> entry = iter.next();
+			Path file = entry.getKey();
+			if (isAffected(file, changed) || changed.contains(file.resolveSibling(file.getFileName() + ".br"))) {
+				totalBytes -= entry.getValue().weight();
+				iter.remove();
+			}
+		}
+	}
+
+	/** Returns true if the given file, or any of its parent directories, is in the changed set. */
+	static boolean isAffected(Path file, Set<Path> changed) {
+		for (Path p = file; p != null; p = p.getParent()) {
+			if (changed.contains(p)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Loads every compressible file under the given root, until the cache is full. */
+	void warm(Path root) throws IOException {
+		try (Stream<Path> files = Files.walk(root)) {
+			Iterator<Path> iter = files.iterator();
+			while (iter.hasNext()) {
+				Path file = iter.next();
+				BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+				if (!attrs.isRegularFile() || !isCompressible(mimeTypes.apply(file.getFileName().toString()))) {
+					continue;
+				}
+				synchronized (this) {
+					if (totalBytes + attrs.size() > maxBytes) {
+						return;
+					}
+				}
+				get(file, attrs);
+			}
+		} finally {
+			// warming up isn't a miss from the client's point of view
+			hits.reset();
+			misses.reset();
+		}
+	}
+
+	private synchronized void put(Path file, Asset asset) {
+		Asset previous = entries.put(file, asset);
+		if (previous != null) {
+			totalBytes -= previous.weight();
+		}
+		totalBytes += asset.weight();
+		var iter = entries.entrySet().iterator();
+		while (totalBytes > maxBytes && iter.hasNext()) {
+			Map.Entry<Path, Asset> eldest = iter.next();
+			totalBytes -= eldest.getValue().weight();
+			iter.remove();
+		}
+	}
+
+	private Asset load(Path file, BasicFileAttributes attrs) throws IOException {
+		String contentType = mimeTypes.apply(file.getFileName().toString());
+		byte[] identity = Files.readAllBytes(file);
+		byte[] gzip = null;
+		byte[] brotli = null;
+		if (isCompressible(contentType)) {
+			gzip = smallerOrNull(gzip(identity), identity);
+			// the JDK has no brotli encoder, so we use the `.br` sibling if the bundler wrote one
+			Path brFile = file.resolveSibling(file.getFileName() + ".br");
+			if (Files.isRegularFile(brFile) && Files.getLastModifiedTime(brFile).toMillis() >= attrs.lastModifiedTime().toMillis()) {
+				brotli = smallerOrNull(Files.readAllBytes(brFile), identity);
+			}
+		}
+		return new Asset(contentType, attrs.lastModifiedTime().toMillis(), identity.length, identity, gzip, brotli);
+	}
+
+	private static byte[] smallerOrNull(byte[] compressed, byte[] identity) {
+		return compressed.length < identity.length ? compressed : null;
+	}
+
+	private static byte[] gzip(byte[] identity) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(identity.length / 4);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+			gzip.write(identity);
+		}
+		return bytes.toByteArray();
+	}
+
+	/** Returns true if the given content type is text-like, and therefore worth compressing. */
+	static boolean isCompressible(String contentType) {
+		if (contentType == null) {
+			return false;
+		}
+		return contentType.startsWith("text/")
+				|| contentType.startsWith("application/javascript")
+				|| contentType.startsWith("application/json")
+				|| contentType.startsWith("application/xml")
+				|| contentType.startsWith("application/wasm")
+				|| contentType.startsWith("image/svg+xml");
+	}
+
+	/** The content-codings we can serve, in order of preference. */
+	enum Encoding {
+		BROTLI("br"), GZIP("gzip"), IDENTITY(null);
+
+		final String headerValue;
+
+		Encoding(String headerValue) {
+			this.headerValue = headerValue;
+		}
+
+		/**
+		 * Parses an `Accept-Encoding` header, returning the acceptable encodings in order of preference.
+		 * A coding which is named more than once is acceptable if any of them has a non-zero weight.
+		 */
+		static Encoding[] acceptable(String acceptEncoding) {
+			if (acceptEncoding == null || acceptEncoding.isBlank()) {
+				return new Encoding[]{IDENTITY};
+			}
+			Boolean br = null, gzip = null, identity = null, star = null;
+			for (String token : split(acceptEncoding, ',')) {
+				List<String> parts = split(token, ';');
+				String coding = parts.get(0).trim().toLowerCase(Locale.ROOT);
+				if (coding.isEmpty()) {
+					// an empty list element, e.g. `gzip,,br`
+					continue;
+				}
+				boolean allowed = true;
+				for (int i = 1; i < parts.size(); ++i) {
+					String param = parts.get(i);
+					int equals = param.indexOf('=');
+					if (equals != -1 && param.substring(0, equals).trim().equals("q")) {
+						try {
+							allowed = Double.parseDouble(param.substring(equals + 1).trim()) > 0;
+						} catch (NumberFormatException e) {
+							allowed = false;
+						}
+					}
+				}
+				switch (coding) {
+				case "br":
+					br = Boolean.TRUE.equals(br) || allowed;
+					break;
+				case "gzip":
+				case "x-gzip":
+					gzip = Boolean.TRUE.equals(gzip) || allowed;
+					break;
+				case "identity":
+					identity = Boolean.TRUE.equals(identity) || allowed;
+					break;
+				case "*":
+					star = Boolean.TRUE.equals(star) || allowed;
+					break;
+				}
+			}
+			// codings which weren't named explicitly fall back to `*`, and identity is always acceptable by default
+			boolean starAllowed = Boolean.TRUE.equals(star);
+			return Stream.of(
+					(br != null ? br : starAllowed) ? BROTLI : null,
+					(gzip != null ? gzip : starAllowed) ? GZIP : null,
+					(identity != null ? identity : star == null || starAllowed) ? IDENTITY : null)
+					.filter(e -> e != null)
+					.toArray(Encoding[]::new);
+		}
+
+		/** Splits on the separator, except where it is inside a quoted string, e.g. `br;foo="a,b"`. */
+		private static List<String> split(String value, char separator) {
+			var parts = new ArrayList<String>();
+			int start = 0;
+			boolean quoted = false;
+			for (int i = 0; i < value.length(); ++i) {
+				char c = value.charAt(i);
+				if (quoted && c == '\\') {
+					++i;
+				} else if (c == '"') {
+					quoted = !quoted;
+				} else if (!quoted && c == separator) {
+					parts.add(value.substring(start, i));
+					start = i + 1;
+				}
+			}
+			parts.add(value.substring(start));
+			return parts;
+		}
+	}
+}
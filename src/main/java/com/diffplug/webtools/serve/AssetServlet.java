@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.util.URIUtil;
+
+/**
+ * Serves files from the mounts in {@link RouteIndex}, out of {@link AssetCache}, picking the smallest variant
+ * that the client's `Accept-Encoding` allows. Files at or above the
+ * zero-copy threshold are handed to Jetty as a memory-mapped buffer,
+ * and anything else is streamed from disk. A `Range` request always goes
+ * to {@link ZeroCopy}, which is what handles `Range` and `If-Range`.
+ */
+class AssetServlet extends HttpServlet {
+	private final RouteIndex index;
+	private final AssetCache cache;
+	private final long zeroCopyThreshold;
+	private final boolean mapFiles;
+
+	/**
+	 * @param cache null to disable the in-memory cache
+	 * @param zeroCopyThreshold files at least this big skip the heap, negative to disable
+	 * @param mapFiles false if the files are expected to change while they're served, see {@link ZeroCopy}
+	 */
+	AssetServlet(RouteIndex index, AssetCache cache, long zeroCopyThreshold, boolean mapFiles) {
+		this.index = index;
+		this.cache = cache;
+		this.zeroCopyThreshold = zeroCopyThreshold;
+		this.mapFiles = mapFiles;
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		String path = URIUtil.addPaths(req.getServletPath(), req.getPathInfo());
+		RouteIndex.Route route = index.resolve(path);
+		if (route == null) {
+			resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		if (route.redirectToDir) {
+			// same as DefaultServlet, so that relative links inside index.html resolve correctly
+			resp.sendRedirect(URIUtil.addPaths(req.getRequestURI(), "/"));
+			return;
+		}
+		Path file = route.file;
+		BasicFileAttributes attrs = readAttributes(file);
+		if (attrs == null || !attrs.isRegularFile()) {
+			// deleted since the index last heard about it
+			resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		long lastModified = attrs.lastModifiedTime().toMillis();
+		long ifModifiedSince = req.getDateHeader(HttpHeader.IF_MODIFIED_SINCE.asString());
+		// a 304 waits until we know which variant it stands for, so that it has the same ETag and Vary as the 200
+		boolean notModified = req.getAttribute(CacheHeadersFilter.NOT_MODIFIED_ATTRIBUTE) != null
+				|| (ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000);
+		resp.setDateHeader(HttpHeader.LAST_MODIFIED.asString(), lastModified);
+
+		boolean zeroCopy = zeroCopyThreshold >= 0 && attrs.size() >= zeroCopyThreshold;
+		if (zeroCopy || req.getHeader(HttpHeader.RANGE.asString()) != null) {
+			if (notModified) {
+				resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+			// a range of a small file is cheap to read from disk, so only big files get mapped
+			setContentType(resp, file);
+			ZeroCopy.send(req, resp, file, attrs, zeroCopy && mapFiles);
+			return;
+		}
+		AssetCache.Asset asset = cache == null ? null : cache.get(file, attrs);
+		if (asset == null) {
+			if (notModified) {
+				resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+			setContentType(resp, file);
+			resp.setContentLengthLong(attrs.size());
+			Files.copy(file, resp.getOutputStream());
+			return;
+		}
+		if (asset.contentType != null) {
+			resp.setContentType(asset.contentType);
+		}
+		if (asset.gzip != null || asset.brotli != null) {
+			resp.setHeader(HttpHeader.VARY.asString(), HttpHeader.ACCEPT_ENCODING.asString());
+		}
+		for (AssetCache.Encoding encoding : AssetCache.Encoding.acceptable(req.getHeader(HttpHeader.ACCEPT_ENCODING.asString()))) {
+			byte[] bytes = asset.bytesFor(encoding);
+			if (bytes != null) {
+				send(req, resp, encoding, bytes, notModified);
+				return;
+			}
+		}
+		// the client refused identity, but it's all we've got
+		send(req, resp, AssetCache.Encoding.IDENTITY, asset.identity, notModified);
+	}
+
+	private void setContentType(HttpServletResponse resp, Path file) {
+		String contentType = getServletContext().getMimeType(file.getFileName().toString());
+		if (contentType != null) {
+			resp.setContentType(contentType);
+		}
+	}
+
+	/** Sends the variant, or a 304 with the variant's ETag if the client already has it. */
+	private static void send(HttpServletRequest req, HttpServletResponse resp, AssetCache.Encoding encoding, byte[] bytes, boolean notModified) throws IOException {
+		if (encoding.headerValue != null) {
+			CacheHeadersFilter.tagEncoding(resp, encoding.headerValue);
+		}
+		if (notModified && req.getAttribute(CacheHeadersFilter.NOT_MODIFIED_ATTRIBUTE) != null) {
+			// the filter matched any variant, but the client needs to have this one
+			notModified = CacheHeadersFilter.matchesVariant(req.getHeader(HttpHeader.IF_NONE_MATCH.asString()), resp.getHeader(HttpHeader.ETAG.asString()));
+		}
+		if (notModified) {
+			resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		if (encoding.headerValue != null) {
+			resp.setHeader(HttpHeader.CONTENT_ENCODING.asString(), encoding.headerValue);
+		}
+		resp.setContentLength(bytes.length);
+		resp.getOutputStream().write(bytes);
+	}
+
+	static BasicFileAttributes readAttributes(Path file) throws IOException {
+		try {
+			return Files.readAttributes(file, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.util.URIUtil;
+
+/**
+ * Adds a strong, content-hashed `ETag` to every file, and answers `If-None-Match`
+ * with a 304 without reading the file, or has {@link AssetServlet} answer it if there
+ * are compressed variants, so that the 304 has the same `ETag` and `Vary` as the 200. Hashes are computed once per file and
+ * cached until its size or last-modified time changes. Fingerprinted bundler output
+ * such as `app.3f9a1c.js` never changes content, so it is marked `immutable`,
+ * and everything else is marked `no-cache` so the browser always revalidates.
+ */
+class CacheHeadersFilter extends HttpFilter {
+	/** Request attribute which holds the ETag of the file being served. */
+	static final String ETAG_ATTRIBUTE = CacheHeadersFilter.class.getName() + ".etag";
+	/** Request attribute which is set if `If-None-Match` matched, for {@link AssetServlet} to send the 304 with its variant's headers. */
+	static final String NOT_MODIFIED_ATTRIBUTE = CacheHeadersFilter.class.getName() + ".notModified";
+
+	static final String IMMUTABLE = "public, max-age=31536000, immutable";
+	static final String NO_CACHE = "no-cache";
+
+	/**
+	 * A `.` or `-` separated hash right before the extension of a file which a bundler
+	 * writes, i.e. scripts, styles, fonts and their source maps, since an image or a page
+	 * is named by hand as often as not. The hash is hex in either case with at least one
+	 * digit and one letter (webpack), 8 characters of uppercase base32 (esbuild), or 8
+	 * url-safe base64 characters of mixed case (vite, rollup), so neither a date like
+	 * `20231225` nor a word like `facade` counts.
+	 */
+	private static final Pattern FINGERPRINT = Pattern.compile(".+[.-](?:"
+			+ "(?=[0-9a-f]*[0-9])(?=[0-9a-f]*[a-f])[0-9a-f]{6,}"
+			+ "|(?=[0-9A-F]*[0-9])(?=[0-9A-F]*[A-F])[0-9A-F]{6,}"
+			+ "|(?=[A-Z2-7]*[A-Z])[A-Z2-7]{8}"
+			+ "|(?=[A-Za-z0-9_-]*[A-Z])(?=[A-Za-z0-9_-]*[a-z])[A-Za-z0-9_-]{8}"
+			+ ")\\.(?:js|mjs|cjs|css|woff2?|ttf|otf|eot)(?:\\.map)?");
+
+	private final RouteIndex index;
+	private final boolean variants;
+	private final ConcurrentHashMap<Path, Tag> tags = new ConcurrentHashMap<>();
+
+	/**
+	 * @param variants true if the servlet sends compressed variants, which have their own ETag and a `Vary`,
+	 *                 so a matching `If-None-Match` is left to the servlet, to answer with the same headers
+	 */
+	CacheHeadersFilter(RouteIndex index, boolean variants) {
+		this.index = index;
+		this.variants = variants;
+	}
+
+	private static class Tag {
+		final long lastModified;
+		final long size;
+		final String etag;
+
+		Tag(long lastModified, long size, String etag) {
+			this.lastModified = lastModified;
+			this.size = size;
+			this.etag = etag;
+		}
+	}
+
+	static boolean isFingerprinted(String filename) {
+		return FINGERPRINT.matcher(filename).matches();
+	}
+
+	@Override
+	protected void doFilter(HttpServletRequest req, HttpServletResponse resp, FilterChain chain) throws IOException, ServletException {
+		String method = req.getMethod();
+		RouteIndex.Route route = "GET".equals(method) || "HEAD".equals(method)
+				? index.resolve(URIUtil.addPaths(req.getServletPath(), req.getPathInfo()))
+				: null;
+		Path file = route == null ? null : route.file;
+		String etag;
+		try {
+			etag = file == null ? null : etag(file);
+		} catch (NoSuchFileException e) {
+			// deleted since the index last heard about it
+			etag = null;
+		}
+		if (etag == null) {
+			chain.doFilter(req, resp);
+			return;
+		}
+		resp.setHeader(HttpHeader.ETAG.asString(), etag);
+		resp.setHeader(HttpHeader.CACHE_CONTROL.asString(), isFingerprinted(file.getFileName().toString()) ? IMMUTABLE : NO_CACHE);
+
+		String ifNoneMatch = req.getHeader(HttpHeader.IF_NONE_MATCH.asString());
+		if (ifNoneMatch == null) {
+			req.setAttribute(ETAG_ATTRIBUTE, etag);
+			chain.doFilter(req, resp);
+		} else if (matches(ifNoneMatch, etag)) {
+			if (variants) {
+				req.setAttribute(ETAG_ATTRIBUTE, etag);
+				req.setAttribute(NOT_MODIFIED_ATTRIBUTE, Boolean.TRUE);
+				chain.doFilter(req, resp);
+			} else {
+				resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			}
+		} else {
+			// If-None-Match takes precedence over If-Modified-Since (RFC 9110 13.1.3)
+			req.setAttribute(ETAG_ATTRIBUTE, etag);
+			chain.doFilter(new HttpServletRequestWrapper(req) {
+				@Override
+				public String getHeader(String name) {
+					return HttpHeader.IF_MODIFIED_SINCE.is(name) ? null : super.getHeader(name);
+				}
+
+				@Override
+				public long getDateHeader(String name) {
+					return HttpHeader.IF_MODIFIED_SINCE.is(name) ? -1 : super.getDateHeader(name);
+				}
+			}, resp);
+		}
+	}
+
+	/** Returns the (cached) strong ETag for the given file. */
+	String etag(Path file) throws IOException {
+		BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+		long lastModified = attrs.lastModifiedTime().toMillis();
+		Tag tag = tags.get(file);
+		if (tag == null || tag.lastModified != lastModified || tag.size != attrs.size()) {
+			tag = new Tag(lastModified, attrs.size(), hash(file));
+			tags.put(file, tag);
+		}
+		return tag.etag;
+	}
+
+	/** Drops the cached hash for every file which is one of the given paths, or is inside one of them. */
+	void invalidate(Set<Path> changed) {
+		tags.keySet().removeIf(file -> AssetCache.isAffected(file, changed));
+	}
+
+	/** Compressed variants are different bytes, so they get a different (but related) strong ETag. */
+	static void tagEncoding(HttpServletResponse resp, String encoding) {
+		String etag = resp.getHeader(HttpHeader.ETAG.asString());
+		if (etag != null) {
+			resp.setHeader(HttpHeader.ETAG.asString(), etag.substring(0, etag.length() - 1) + "-" + encoding + "\"");
+		}
+	}
+
+	/** Returns true if the `If-None-Match` header matches the given ETag, ignoring any content-coding suffix. */
+	static boolean matches(String ifNoneMatch, String etag) {
+		String bare = etag.substring(1, etag.length() - 1);
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.equals("*")) {
+				return true;
+			}
+			if (candidate.startsWith("W/")) {
+				candidate = candidate.substring(2);
+			}
+			if (candidate.length() < 2 || candidate.charAt(0) != '"') {
+				continue;
+			}
+			candidate = candidate.substring(1, candidate.length() - 1);
+			int dash = candidate.lastIndexOf('-');
+			if (candidate.equals(bare) || (dash != -1 && candidate.substring(0, dash).equals(bare))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Returns true if the `If-None-Match` header matches exactly the given variant's ETag. */
+	static boolean matchesVariant(String ifNoneMatch, String etag) {
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.startsWith("W/")) {
+				candidate = candidate.substring(2);
+			}
+			if (candidate.equals("*") || candidate.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String hash(Path file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+		byte[] buffer = new byte[64 * 1024];
+		try (InputStream input = Files.newInputStream(file)) {
+			int read;
+			while ((read = input.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		// 128 bits is plenty to tell versions of a file apart
+		return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest.digest(), 16)) + '"';
+	}
+}
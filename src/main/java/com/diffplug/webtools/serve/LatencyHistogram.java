@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free, fixed-size histogram of latencies in microseconds, laid out
+ * the same way as HdrHistogram: values below {@link #EXACT} get their own
+ * bucket, and above that there is one group of {@link #HALF} linear buckets
+ * per power of two. That keeps every recorded value within 12.5% of its true
+ * value, from 1us up to about an hour, in a couple of kilobytes.
+ */
+class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int EXACT = 1 << SUB_BUCKET_BITS;
+	private static final int HALF = EXACT / 2;
+	/** 2^32 us is over an hour, anything longer gets clamped. */
+	private static final int MAX_BITS = 32;
+
+	private final AtomicLongArray counts = new AtomicLongArray(EXACT + (MAX_BITS - SUB_BUCKET_BITS) * HALF);
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+	private final LongAdder sum = new LongAdder();
+
+	void record(long micros) {
+		long value = Math.max(0, Math.min(micros, (1L << MAX_BITS) - 1));
+		counts.incrementAndGet(indexOf(value));
+		max.accumulate(value);
+		sum.add(value);
+	}
+
+	private static int indexOf(long value) {
+		int bits = 64 - Long.numberOfLeadingZeros(value);
+		if (bits <= SUB_BUCKET_BITS) {
+			return (int) value;
+		}
+		int group = bits - SUB_BUCKET_BITS;
+		// the top SUB_BUCKET_BITS of the value are between HALF and EXACT - 1
+		int sub = (int) (value >>> group) - HALF;
+		return EXACT + (group - 1) * HALF + sub;
+	}
+
+	/** The largest value which lands in the given bucket. */
+	private static long highestValueAt(int index) {
+		if (index < EXACT) {
+			return index;
+		}
+		int group = (index - EXACT) / HALF + 1;
+		int top = (index - EXACT) % HALF + HALF;
+		return ((long) (top + 1) << group) - 1;
+	}
+
+	long count() {
+		long total = 0;
+		for (int i = 0; i < counts.length(); ++i) {
+			total += counts.get(i);
+		}
+		return total;
+	}
+
+	long max() {
+		return max.get();
+	}
+
+	/** The exact total of every recorded value, rather than of the buckets they landed in. */
+	long sum() {
+		return sum.sum();
+	}
+
+	/** Returns the value at the given percentile (0 to 100), or 0 if nothing has been recorded. */
+	long percentile(double percentile) {
+		long total = count();
+		if (total == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); ++i) {
+			seen += counts.get(i);
+			if (seen >= target) {
+				return Math.min(highestValueAt(i), max());
+			}
+		}
+		return max();
+	}
+}
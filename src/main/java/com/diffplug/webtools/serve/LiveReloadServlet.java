@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes reload events to browsers using server-sent events. Pages opt in with
+ * `<script src="/__livereload.js"></script>`, and the script reloads the page
+ * whenever the served directory changes.
+ */
+class LiveReloadServlet extends HttpServlet {
+	static final String EVENTS_PATH = "/__livereload";
+	static final String SCRIPT_PATH = "/__livereload.js";
+
+	private static final String SCRIPT = "new EventSource('" + EVENTS_PATH + "').addEventListener('reload', function () { location.reload(); });\n";
+	/** Comment lines keep idle connections from hitting the connector's idle timeout. */
+	private static final long PING_SECONDS = 15;
+
+	private final ConcurrentLinkedQueue<AsyncContext> clients = new ConcurrentLinkedQueue<>();
+	private final ScheduledExecutorService pinger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "LiveReload ping");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	LiveReloadServlet() {
+		pinger.scheduleAtFixedRate(() -> broadcast(": ping\n\n"), PING_SECONDS, PING_SECONDS, TimeUnit.SECONDS);
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		if (req.getServletPath().equals(SCRIPT_PATH)) {
+			resp.setContentType("application/javascript");
+			resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+			resp.getWriter().write(SCRIPT);
+			return;
+		}
+		resp.setContentType("text/event-stream");
+		resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		resp.setHeader("Cache-Control", "no-cache");
+		resp.flushBuffer();
+
+		AsyncContext async = req.startAsync();
+		async.setTimeout(0);
+		async.addListener(new AsyncListener() {
+			@Override
+			public void onComplete(AsyncEvent event) {
+				clients.remove(async);
+			}
+
+			@Override
+			public void onTimeout(AsyncEvent event) {
+				clients.remove(async);
+			}
+
+			@Override
+			public void onError(AsyncEvent event) {
+				clients.remove(async);
+			}
+
+			@Override
+			public void onStartAsync(AsyncEvent event) {}
+		});
+		clients.add(async);
+	}
+
+	/** Tells every connected browser to reload. */
+	void reload() {
+		broadcast("event: reload\ndata: {}\n\n");
+	}
+
+	private void broadcast(String message) {
+		Iterator<AsyncContext> iter = clients.iterator();
+		while (iter.hasNext()) {
+			AsyncContext async = iter.next();
+			try {
+				var writer = async.getResponse().getWriter();
+				writer.write(message);
+				writer.flush();
+				if (writer.checkError()) {
+					throw new IOException("Client disconnected");
+				}
+			} catch (IOException | IllegalStateException e) {
+				iter.remove();
+				try {
+					async.complete();
+				} catch (IllegalStateException alreadyCompleted) {
+					// nothing to clean up
+				}
+			}
+		}
+	}
+
+	@Override
+	public void destroy() {
+		pinger.shutdownNow();
+		for (AsyncContext async : clients) {
+			try {
+				async.complete();
+			} catch (IllegalStateException e) {
+				// already completed
+			}
+		}
+		clients.clear();
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * An in-memory index from URL path to file, across every mounted directory.
+ * It is built by walking the mounts at startup and kept current by the
+ * {@link com.diffplug.webtools.DirWatcher} batches, so resolving a path (and especially missing
+ * a path) never has to stat the filesystem.
+ */
+class RouteIndex {
+	static final String INDEX_HTML = "index.html";
+
+	/** A directory served under a URL prefix, the prefix is empty for `/`. */
+	static class Mount {
+		final String prefix;
+		final Path root;
+
+		Mount(String prefix, Path root) {
+			this.prefix = prefix;
+			this.root = root;
+		}
+	}
+
+	/** The result of resolving a path, either a file to serve or a redirect to the directory's trailing-slash form. */
+	static class Route {
+		final Path file;
+		final boolean redirectToDir;
+
+		private Route(Path file, boolean redirectToDir) {
+			this.file = file;
+			this.redirectToDir = redirectToDir;
+		}
+	}
+
+	private static final Route REDIRECT_TO_DIR = new Route(null, true);
+
+	/** Longest prefix first, so that `/docs` wins over `/`. */
+	private final List<Mount> mounts;
+	private final boolean spaFallback;
+	private final Map<String, Path> files = new ConcurrentHashMap<>();
+	private final Map<String, Path> dirs = new ConcurrentHashMap<>();
+
+	/** @param mounts keys are URL prefixes like `/` or `/docs` */
+	RouteIndex(Map<String, Path> mounts, boolean spaFallback) throws IOException {
+		this.mounts = new ArrayList<>();
+		mounts.forEach((prefix, root) -> this.mounts.add(new Mount(normalizePrefix(prefix), root)));
+		this.mounts.sort(Comparator.comparingInt((Mount m) -> m.prefix.length()).reversed());
+		this.spaFallback = spaFallback;
+		for (Mount mount : this.mounts) {
+			walk(mount, mount.root, files, dirs);
+		}
+	}
+
+	List<Mount> mounts() {
+		return mounts;
+	}
+
+	private static String normalizePrefix(String prefix) {
+		if (prefix.endsWith("/")) {
+			prefix = prefix.substring(0, prefix.length() - 1);
+		}
+		return prefix.isEmpty() || prefix.startsWith("/") ? prefix : "/" + prefix;
+	}
+
+	/** Returns the route for the given request path, or null if there is nothing to serve. */
+	Route resolve(String path) {
+		Path file = files.get(path);
+		if (file != null) {
+			return new Route(file, false);
+		}
+		if (path.endsWith("/")) {
+			file = files.get(path + INDEX_HTML);
+			if (file != null) {
+				return new Route(file, false);
+			}
+		} else if (dirs.containsKey(path)) {
+			return REDIRECT_TO_DIR;
+		}
+		if (spaFallback && !path.substring(path.lastIndexOf('/') + 1).contains(".")) {
+			// history-API routes like `/users/42` get the app's index.html, but missing assets stay 404
+			Mount mount = mountFor(path);
+			if (mount != null) {
+				file = files.get(mount.prefix + "/" + INDEX_HTML);
+				if (file != null) {
+					return new Route(file, false);
+				}
+			}
+		}
+		return null;
+	}
+
+	private Mount mountFor(String path) {
+		for (Mount mount : mounts) {
+			if (path.startsWith(mount.prefix) && (path.length() == mount.prefix.length() || path.charAt(mount.prefix.length()) == '/')) {
+				return mount;
+			}
+		}
+		return null;
+	}
+
+	/** Updates the index for a batch of changed files and directories inside the given mount. */
+	void update(Mount mount, Set<Path> changed) {
+		for (Path path : changed) {
+			if (!path.startsWith(mount.root)) {
+				continue;
+			}
+			if (Files.isRegularFile(path)) {
+				String url = urlOf(mount, path);
+				if (owns(mount, url)) {
+					files.put(url, path);
+				}
+				continue;
+			}
+			Map<String, Path> walkedFiles = new HashMap<>();
+			Map<String, Path> walkedDirs = new HashMap<>();
+			if (Files.isDirectory(path)) {
+				try {
+					walk(mount, path, walkedFiles, walkedDirs);
+				} catch (IOException | UncheckedIOException e) {
+					// it was deleted while we walked it, a later event will clean up
+				}
+			}
+			// add the new entries before dropping the stale ones, so that live paths never miss
+			files.putAll(walkedFiles);
+			dirs.putAll(walkedDirs);
+			files.entrySet().removeIf(e -> e.getValue().startsWith(path) && owns(mount, e.getKey()) && !walkedFiles.containsKey(e.getKey()));
+			dirs.entrySet().removeIf(e -> e.getValue().startsWith(path) && owns(mount, e.getKey()) && !walkedDirs.containsKey(e.getKey()));
+		}
+	}
+
+	/**
+	 * True if `url` belongs to `mount` rather than to a mount with a longer prefix, e.g. `/docs/a.html`
+	 * inside the `/` mount's directory is shadowed by the `/docs` mount, whichever order they're walked in.
+	 */
+	private boolean owns(Mount mount, String url) {
+		return mountFor(url) == mount;
+	}
+
+	private void walk(Mount mount, Path dir, Map<String, Path> files, Map<String, Path> dirs) throws IOException {
+		try (Stream<Path> paths = Files.walk(dir)) {
+			paths.forEach(path -> {
+				String url = urlOf(mount, path);
+				if (!owns(mount, url)) {
+					return;
+				}
+				if (Files.isDirectory(path)) {
+					dirs.put(url, path);
+				} else {
+					files.put(url, path);
+				}
+			});
+		}
+	}
+
+	private static String urlOf(Mount mount, Path path) {
+		StringBuilder url = new StringBuilder(mount.prefix);
+		for (Path segment : mount.root.relativize(path)) {
+			if (!segment.toString().isEmpty()) {
+				url.append('/').append(segment);
+			}
+		}
+		return url.length() == 0 ? "/" : url.toString();
+	}
+}
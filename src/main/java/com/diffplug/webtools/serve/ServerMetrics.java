@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.URIUtil;
+
+/**
+ * Request counts, bytes sent, cache hits and misses, and latency percentiles,
+ * both overall and per path. Served at `/__metrics` in Prometheus text format
+ * and at `/__metrics.json`, and printed as a table when the server stops.
+ */
+class ServerMetrics {
+	static final String PROMETHEUS_PATH = "/__metrics";
+	static final String JSON_PATH = "/__metrics.json";
+
+	/** Bounds memory if something crawls lots of distinct (e.g. missing) paths. */
+	private static final int MAX_PATHS = 10_000;
+	private static final String OTHER_PATHS = "(other)";
+	private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+	static class Stats {
+		final LongAdder requests = new LongAdder();
+		final LongAdder bytes = new LongAdder();
+		final LatencyHistogram latency = new LatencyHistogram();
+
+		void record(long micros, long bytesSent) {
+			requests.increment();
+			bytes.add(bytesSent);
+			latency.record(micros);
+		}
+	}
+
+	private final Stats total = new Stats();
+	private final ConcurrentHashMap<String, Stats> byPath = new ConcurrentHashMap<>();
+	private final LongAdder notModified = new LongAdder();
+	private final AssetCache cache;
+
+	/** @param cache null if the in-memory cache is disabled */
+	ServerMetrics(AssetCache cache) {
+		this.cache = cache;
+	}
+
+	private long cacheHits() {
+		return cache == null ? 0 : cache.hits.sum();
+	}
+
+	private long cacheMisses() {
+		return cache == null ? 0 : cache.misses.sum();
+	}
+
+	void record(String path, int status, long micros, long bytesSent) {
+		total.record(micros, bytesSent);
+		if (status == HttpServletResponse.SC_NOT_MODIFIED) {
+			notModified.increment();
+		}
+		Stats stats = byPath.get(path);
+		if (stats == null) {
+			stats = byPath.computeIfAbsent(byPath.size() < MAX_PATHS ? path : OTHER_PATHS, unused -> new Stats());
+		}
+		stats.record(micros, bytesSent);
+	}
+
+	private List<Map.Entry<String, Stats>> sortedByBytes() {
+		List<Map.Entry<String, Stats>> entries = new ArrayList<>(byPath.entrySet());
+		entries.sort(Comparator.comparingLong((Map.Entry<String, Stats> e) -> e.getValue().bytes.sum()).reversed());
+		return entries;
+	}
+
+	private double cacheHitRatio() {
+		long hits = cacheHits();
+		long lookups = hits + cacheMisses();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	String prometheus() {
+		StringBuilder out = new StringBuilder();
+		out.append("# TYPE static_server_requests_total counter\n");
+		out.append("static_server_requests_total ").append(total.requests.sum()).append('\n');
+		out.append("# TYPE static_server_bytes_total counter\n");
+		out.append("static_server_bytes_total ").append(total.bytes.sum()).append('\n');
+		out.append("# TYPE static_server_not_modified_total counter\n");
+		out.append("static_server_not_modified_total ").append(notModified.sum()).append('\n');
+		out.append("# TYPE static_server_cache_hits_total counter\n");
+		out.append("static_server_cache_hits_total ").append(cacheHits()).append('\n');
+		out.append("# TYPE static_server_cache_misses_total counter\n");
+		out.append("static_server_cache_misses_total ").append(cacheMisses()).append('\n');
+		out.append("# TYPE static_server_latency_seconds summary\n");
+		appendSummary(out, "static_server_latency_seconds", "", total.latency);
+		out.append("# TYPE static_server_path_requests_total counter\n");
+		for (Map.Entry<String, Stats> entry : sortedByBytes()) {
+			out.append("static_server_path_requests_total{path=\"").append(escapeLabel(entry.getKey())).append("\"} ")
+					.append(entry.getValue().requests.sum()).append('\n');
+		}
+		out.append("# TYPE static_server_path_bytes_total counter\n");
+		for (Map.Entry<String, Stats> entry : sortedByBytes()) {
+			out.append("static_server_path_bytes_total{path=\"").append(escapeLabel(entry.getKey())).append("\"} ")
+					.append(entry.getValue().bytes.sum()).append('\n');
+		}
+		out.append("# TYPE static_server_path_latency_seconds summary\n");
+		for (Map.Entry<String, Stats> entry : sortedByBytes()) {
+			appendSummary(out, "static_server_path_latency_seconds", "path=\"" + escapeLabel(entry.getKey()) + "\"", entry.getValue().latency);
+		}
+		return out.toString();
+	}
+
+	/** A Prometheus summary in seconds, i.e. its quantiles followed by `_sum` and `_count`, with the given labels on every sample. */
+	private static void appendSummary(StringBuilder out, String name, String labels, LatencyHistogram latency) {
+		String prefix = labels.isEmpty() ? "" : labels + ",";
+		for (double p : PERCENTILES) {
+			out.append(name).append('{').append(prefix).append("quantile=\"").append(p / 100).append("\"} ")
+					.append(latency.percentile(p) / 1e6).append('\n');
+		}
+		String suffix = labels.isEmpty() ? " " : "{" + labels + "} ";
+		out.append(name).append("_sum").append(suffix).append(latency.sum() / 1e6).append('\n');
+		out.append(name).append("_count").append(suffix).append(latency.count()).append('\n');
+	}
+
+	String json() {
+		StringBuilder out = new StringBuilder();
+		out.append("{\"requests\":").append(total.requests.sum());
+		out.append(",\"bytes\":").append(total.bytes.sum());
+		out.append(",\"notModified\":").append(notModified.sum());
+		out.append(",\"cacheHits\":").append(cacheHits());
+		out.append(",\"cacheMisses\":").append(cacheMisses());
+		out.append(",\"cacheHitRatio\":").append(cacheHitRatio());
+		out.append(",\"latencyMicros\":");
+		appendLatency(out, total.latency);
+		out.append(",\"paths\":{");
+		boolean first = true;
+		for (Map.Entry<String, Stats> entry : sortedByBytes()) {
+			if (!first) {
+				out.append(',');
+			}
+			first = false;
+			Stats stats = entry.getValue();
+			out.append('"').append(escapeJson(entry.getKey())).append("\":{");
+			out.append("\"requests\":").append(stats.requests.sum());
+			out.append(",\"bytes\":").append(stats.bytes.sum());
+			out.append(",\"latencyMicros\":");
+			appendLatency(out, stats.latency);
+			out.append('}');
+		}
+		out.append("}}");
+		return out.toString();
+	}
+
+	private static void appendLatency(StringBuilder out, LatencyHistogram latency) {
+		out.append("{\"p50\":").append(latency.percentile(50));
+		out.append(",\"p90\":").append(latency.percentile(90));
+		out.append(",\"p99\":").append(latency.percentile(99));
+		out.append(",\"p999\":").append(latency.percentile(99.9));
+		out.append(",\"max\":").append(latency.max()).append('}');
+	}
+
+	/** A table of the paths which sent the most bytes, for printing when the server stops. */
+	String summaryTable(int maxRows) {
+		StringBuilder out = new StringBuilder();
+		out.append(String.format("%d requests, %s sent, %d not modified, cache hit ratio %.1f%%, p50 %dus, p99 %dus%n",
+				total.requests.sum(), humanBytes(total.bytes.sum()), notModified.sum(), cacheHitRatio() * 100,
+				total.latency.percentile(50), total.latency.percentile(99)));
+		out.append(String.format("%10s %10s %10s %10s  %s%n", "requests", "bytes", "p50 us", "p99 us", "path"));
+		List<Map.Entry<String, Stats>> entries = sortedByBytes();
+		for (Map.Entry<String, Stats> entry : entries.subList(0, Math.min(maxRows, entries.size()))) {
+			Stats stats = entry.getValue();
+			out.append(String.format("%10d %10s %10d %10d  %s%n", stats.requests.sum(), humanBytes(stats.bytes.sum()),
+					stats.latency.percentile(50), stats.latency.percentile(99), entry.getKey()));
+		}
+		return out.toString();
+	}
+
+	private static String humanBytes(long bytes) {
+		if (bytes < 1024) {
+			return bytes + "B";
+		} else if (bytes < 1024 * 1024) {
+			return String.format("%.1fKB", bytes / 1024.0);
+		} else {
+			return String.format("%.1fMB", bytes / (1024.0 * 1024));
+		}
+	}
+
+	private static String escapeLabel(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	private static String escapeJson(String value) {
+		StringBuilder out = new StringBuilder(value.length());
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				out.append('\\').append(c);
+			} else if (c < 0x20) {
+				out.append(String.format("\\u%04x", (int) c));
+			} else {
+				out.append(c);
+			}
+		}
+		return out.toString();
+	}
+
+	/** Times every request, and counts the bytes which Jetty actually wrote for it. */
+	static class Filter extends HttpFilter {
+		private final ServerMetrics metrics;
+
+		Filter(ServerMetrics metrics) {
+			this.metrics = metrics;
+		}
+
+		@Override
+		protected void doFilter(HttpServletRequest req, HttpServletResponse resp, FilterChain chain) throws IOException, ServletException {
+			String path = URIUtil.addPaths(req.getServletPath(), req.getPathInfo());
+			if (path.startsWith("/__")) {
+				// don't measure the metrics or live-reload endpoints themselves
+				chain.doFilter(req, resp);
+				return;
+			}
+			long start = System.nanoTime();
+			try {
+				chain.doFilter(req, resp);
+			} finally {
+				long micros = (System.nanoTime() - start) / 1_000;
+				Request baseRequest = Request.getBaseRequest(req);
+				long bytes = baseRequest == null ? 0 : baseRequest.getResponse().getHttpOutput().getWritten();
+				metrics.record(path, resp.getStatus(), micros, bytes);
+			}
+		}
+	}
+
+	/** Serves the metrics in Prometheus text format, or as JSON. */
+	static class Servlet extends HttpServlet {
+		private final ServerMetrics metrics;
+
+		Servlet(ServerMetrics metrics) {
+			this.metrics = metrics;
+		}
+
+		@Override
+		protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+			resp.setHeader("Cache-Control", "no-store");
+			resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+			if (req.getServletPath().equals(JSON_PATH)) {
+				resp.setContentType("application/json");
+				resp.getWriter().write(metrics.json());
+			} else {
+				resp.setContentType("text/plain; version=0.0.4");
+				resp.getWriter().write(metrics.prometheus());
+			}
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import com.diffplug.webtools.DirWatcher;
+import jakarta.servlet.DispatcherType;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.BindException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.gradle.api.GradleException;
+
+/** A running Jetty server, along with the file watcher which keeps its caches fresh. */
+class StaticServer {
+	/** Everything needed to start a server, two configs are equal if they serialize to the same bytes. */
+	static class Config implements Serializable {
+		private static final long serialVersionUID = 9088714151293377306L;
+
+		int port = 8080;
+		File dir;
+		TreeMap<String, File> mounts = new TreeMap<>();
+		boolean spaFallback = false;
+		boolean cache = false;
+		long cacheMaxBytes = 256L * 1024 * 1024;
+		long zeroCopyThreshold = -1;
+		boolean liveReload = false;
+		boolean cacheHeaders = false;
+		boolean metrics = false;
+		StaticServerTask.Connector connector = new StaticServerTask.Connector();
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Config && Arrays.equals(toBytes(this), toBytes(other));
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(toBytes(this));
+		}
+
+		static byte[] toBytes(Object key) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream objectOutput = new ObjectOutputStream(bytes)) {
+				objectOutput.writeObject(key);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return bytes.toByteArray();
+		}
+	}
+
+	final Config config;
+	private final Server server;
+	private final List<DirWatcher> watchers;
+	private final ServerMetrics metrics;
+
+	private StaticServer(Config config, Server server, List<DirWatcher> watchers, ServerMetrics metrics) {
+		this.config = config;
+		this.server = server;
+		this.watchers = watchers;
+		this.metrics = metrics;
+	}
+
+	static StaticServer start(Config config) throws Exception {
+		Server server = createServer(config.port, config.connector);
+
+		ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+		context.setContextPath("/");
+		Map<String, Path> mounts = new LinkedHashMap<>();
+		if (config.dir != null) {
+			context.setResourceBase(config.dir.getAbsolutePath());
+			mounts.put("/", config.dir.toPath().toAbsolutePath().normalize());
+		}
+		config.mounts.forEach((prefix, dir) -> mounts.put(prefix, dir.toPath().toAbsolutePath().normalize()));
+		if (mounts.isEmpty()) {
+			throw new GradleException("StaticServerTask needs a `dir` or at least one `mount`");
+		}
+		boolean useAssetServlet = config.cache || config.zeroCopyThreshold >= 0 || !config.mounts.isEmpty() || config.spaFallback;
+		// anything which watches the mounts might as well keep an index of them too
+		RouteIndex index = useAssetServlet || config.cacheHeaders || config.liveReload ? new RouteIndex(mounts, config.spaFallback) : null;
+		AssetCache assetCache = null;
+		if (useAssetServlet) {
+			if (config.cache) {
+				assetCache = new AssetCache(config.cacheMaxBytes, context.getMimeTypes()::getMimeByExtension);
+				for (Path root : mounts.values()) {
+					assetCache.warm(root);
+				}
+			}
+			context.addServlet(new ServletHolder(new AssetServlet(index, assetCache, config.zeroCopyThreshold, !config.liveReload)), "/");
+		} else {
+			context.addServlet(DefaultServlet.class, "/");
+		}
+		ServerMetrics metrics = null;
+		if (config.metrics) {
+			// added first so that it also times and counts the 304s from CacheHeadersFilter
+			metrics = new ServerMetrics(assetCache);
+			context.addFilter(new FilterHolder(new ServerMetrics.Filter(metrics)), "/*", EnumSet.of(DispatcherType.REQUEST));
+			ServletHolder holder = new ServletHolder(new ServerMetrics.Servlet(metrics));
+			context.addServlet(holder, ServerMetrics.PROMETHEUS_PATH);
+			context.addServlet(holder, ServerMetrics.JSON_PATH);
+		}
+		CacheHeadersFilter cacheHeadersFilter = null;
+		if (config.cacheHeaders) {
+			cacheHeadersFilter = new CacheHeadersFilter(index, assetCache != null);
+			context.addFilter(new FilterHolder(cacheHeadersFilter), "/*", EnumSet.of(DispatcherType.REQUEST));
+		}
+		LiveReloadServlet liveReloadServlet = null;
+		if (config.liveReload) {
+			liveReloadServlet = new LiveReloadServlet();
+			ServletHolder holder = new ServletHolder(liveReloadServlet);
+			holder.setAsyncSupported(true);
+			context.addServlet(holder, LiveReloadServlet.EVENTS_PATH);
+			context.addServlet(holder, LiveReloadServlet.SCRIPT_PATH);
+		}
+		List<DirWatcher> watchers = new ArrayList<>();
+		AssetCache cacheToInvalidate = assetCache;
+		CacheHeadersFilter etagsToInvalidate = cacheHeadersFilter;
+		LiveReloadServlet toReload = liveReloadServlet;
+		try {
+			if (index != null) {
+				for (RouteIndex.Mount mount : index.mounts()) {
+					watchers.add(new DirWatcher(mount.root, changed -> {
+						// the index goes first, so that nothing downstream can re-read a path it still thinks exists
+						index.update(mount, changed);
+						if (cacheToInvalidate != null) {
+							cacheToInvalidate.invalidate(changed);
+						}
+						if (etagsToInvalidate != null) {
+							etagsToInvalidate.invalidate(changed);
+						}
+						if (toReload != null) {
+							toReload.reload();
+						}
+					}));
+				}
+			}
+			server.setHandler(context);
+			server.start();
+		} catch (Exception e) {
+			closeAll(watchers);
+			if (hasCause(e, BindException.class)) {
+				// e.g. a `keepAlive` server in another daemon, which only that daemon can stop
+				throw new GradleException("Port " + config.port + " is already in use, either by a `keepAlive` server in another Gradle daemon "
+						+ "(`./gradlew --stop` stops every daemon, and their servers), or by another process", e);
+			}
+			throw e;
+		}
+		return new StaticServer(config, server, watchers, metrics);
+	}
+
+	private static Server createServer(int port, StaticServerTask.Connector connector) {
+		QueuedThreadPool threadPool = new QueuedThreadPool();
+		threadPool.setName("StaticServer");
+		if (connector.virtualThreads) {
+			threadPool.setVirtualThreadsExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		}
+		Server server = new Server(threadPool);
+
+		HttpConfiguration httpConfig = new HttpConfiguration();
+		httpConfig.setOutputBufferSize(connector.outputBufferSize);
+		HttpConnectionFactory http1 = new HttpConnectionFactory(httpConfig);
+		ServerConnector serverConnector;
+		if (connector.h2c) {
+			serverConnector = new ServerConnector(server, connector.acceptors, connector.selectors, http1, new HTTP2CServerConnectionFactory(httpConfig));
+		} else {
+			serverConnector = new ServerConnector(server, connector.acceptors, connector.selectors, http1);
+		}
+		serverConnector.setPort(port);
+		serverConnector.setIdleTimeout(connector.idleTimeoutMs);
+		server.addConnector(serverConnector);
+		return server;
+	}
+
+	private static boolean hasCause(Throwable e, Class<? extends Throwable> type) {
+		for (; e != null; e = e.getCause()) {
+			if (type.isInstance(e)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	void stop() throws Exception {
+		closeAll(watchers);
+		server.stop();
+		server.join();
+		if (metrics != null) {
+			System.out.print(metrics.summaryTable(SUMMARY_ROWS));
+		}
+	}
+
+	private static void closeAll(List<DirWatcher> watchers) throws IOException {
+		for (DirWatcher watcher : watchers) {
+			watcher.close();
+		}
+	}
+
+	/** How many paths to show in the summary printed when the server stops. */
+	private static final int SUMMARY_ROWS = 20;
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.api.services.BuildServiceRegistry;
+
+/**
+ * Owns the static servers which run in the background. A server stops when
+ * this service closes at the end of the build, unless it was started with
+ * `keepAlive`, in which case it stays up in the Gradle daemon and is reused
+ * by later builds which ask for the same config.
+ *
+ * A changed buildscript classpath loads this plugin again in a new classloader,
+ * whose statics start out empty, so each server is registered with the platform
+ * MBean server instead, which every copy of the plugin can see and call into.
+ * A copy with a different `Config` class (i.e. another plugin version) can stop
+ * the server, but never reuses it. A server in another daemon is out of reach,
+ * its port stays taken until that daemon stops.
+ */
+public abstract class StaticServerService implements BuildService<BuildServiceParameters.None>, AutoCloseable {
+	static final String NAME = "webtoolsStaticServer";
+
+	static Provider<StaticServerService> register(BuildServiceRegistry sharedServices) {
+		return sharedServices.registerIfAbsent(NAME, StaticServerService.class, spec -> {});
+	}
+
+	/** How every copy of the plugin sees a running server, public only because JMX requires it. */
+	public interface RunningMBean {
+		/** The serialized {@link StaticServer.Config}. */
+		byte[] getConfig();
+
+		boolean isKeepAlive();
+
+		void setKeepAlive(boolean keepAlive);
+
+		void stop() throws Exception;
+	}
+
+	private static class Running implements RunningMBean {
+		private final MBeanServer beans;
+		private final ObjectName name;
+		private final byte[] config;
+		private final StaticServer server;
+		private volatile boolean keepAlive;
+
+		Running(MBeanServer beans, ObjectName name, byte[] config, StaticServer server, boolean keepAlive) {
+			this.beans = beans;
+			this.name = name;
+			this.config = config;
+			this.server = server;
+			this.keepAlive = keepAlive;
+		}
+
+		@Override
+		public byte[] getConfig() {
+			return config;
+		}
+
+		@Override
+		public boolean isKeepAlive() {
+			return keepAlive;
+		}
+
+		@Override
+		public void setKeepAlive(boolean keepAlive) {
+			this.keepAlive = keepAlive;
+		}
+
+		@Override
+		public void stop() throws Exception {
+			beans.unregisterMBean(name);
+			server.stop();
+		}
+	}
+
+	/** Ports of the servers which stop at the end of this build. */
+	private final Set<Integer> running = new HashSet<>();
+
+	/** Starts a server for the given config, reusing a running server if it has exactly the same config. */
+	synchronized void start(StaticServer.Config config, boolean keepAlive) throws Exception {
+		byte[] configBytes = StaticServer.Config.toBytes(config);
+		MBeanServer beans = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = nameFor(config.port);
+		// the MBean server is the only lock that every classloader shares
+		synchronized (beans) {
+			if (beans.isRegistered(name) && Arrays.equals((byte[]) beans.getAttribute(name, "Config"), configBytes)) {
+				// give it whichever lifetime we were asked for
+				beans.setAttribute(name, new Attribute("KeepAlive", keepAlive));
+			} else {
+				stop(config.port);
+				StaticServer server = StaticServer.start(config);
+				beans.registerMBean(new StandardMBean(new Running(beans, name, configBytes, server, keepAlive), RunningMBean.class), name);
+			}
+			if (keepAlive) {
+				running.remove(config.port);
+			} else {
+				running.add(config.port);
+			}
+		}
+	}
+
+	/** Stops the server on the given port, if there is one. Returns true if a server was stopped. */
+	synchronized boolean stop(int port) throws JMException {
+		running.remove(port);
+		MBeanServer beans = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = nameFor(port);
+		synchronized (beans) {
+			if (!beans.isRegistered(name)) {
+				return false;
+			}
+			beans.invoke(name, "stop", null, null);
+			return true;
+		}
+	}
+
+	private static ObjectName nameFor(int port) throws JMException {
+		return new ObjectName("com.diffplug.webtools:type=StaticServer,port=" + port);
+	}
+
+	@Override
+	public synchronized void close() throws JMException {
+		for (int port : Set.copyOf(running)) {
+			stop(port);
+		}
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import javax.inject.Inject;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildServiceRegistry;
+import org.gradle.api.services.ServiceReference;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.DisableCachingByDefault;
+
+/** Stops a {@link StaticServerTask} which was started in the background. */
+@DisableCachingByDefault(because = "Stops a dev server; no outputs")
+public abstract class StaticServerStopTask extends DefaultTask {
+	@Inject
+	public StaticServerStopTask(BuildServiceRegistry sharedServices) {
+		StaticServerService.register(sharedServices);
+	}
+
+	/** The service which owns background servers, registered by the constructor. */
+	@ServiceReference(StaticServerService.NAME)
+	public abstract Property<StaticServerService> getService();
+
+	private int port = 8080;
+
+	/** Set the port of the server to stop. */
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	@TaskAction
+	public void stop() throws Exception {
+		if (!getService().get().stop(port)) {
+			getLogger().lifecycle("No background server running on port " + port);
+		}
+	}
+}
@@ -17,32 +17,150 @@ package com.diffplug.webtools.serve;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.util.Collections;
 import java.util.stream.Stream;
-import org.eclipse.jetty.server.Server;
-import org.eclipse.jetty.servlet.DefaultServlet;
-import org.eclipse.jetty.servlet.ServletContextHandler;
+import javax.inject.Inject;
+import org.gradle.api.Action;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildServiceRegistry;
+import org.gradle.api.services.ServiceReference;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.work.DisableCachingByDefault;
 
 /** Serves a collection of folders using URLs. */
 @DisableCachingByDefault(because = "Dev server task; long-running with no reproducible outputs")
-public class StaticServerTask extends DefaultTask {
-	private int port = 8080;
+public abstract class StaticServerTask extends DefaultTask {
+	private final StaticServer.Config config = new StaticServer.Config();
+
+	@Inject
+	public StaticServerTask(BuildServiceRegistry sharedServices) {
+		StaticServerService.register(sharedServices);
+	}
+
+	/** The service which owns background servers, registered by the constructor. */
+	@ServiceReference(StaticServerService.NAME)
+	public abstract Property<StaticServerService> getService();
 
 	/** Set the port for this server. */
 	public void setPort(int port) {
-		this.port = port;
+		config.port = port;
 	}
 
-	private File dir;
-
 	public void setDir(File dir) {
-		this.dir = dir;
+		config.dir = dir;
+	}
+
+	/**
+	 * Serves another directory under the given path, e.g. `mount('/docs', file('docs/build'))`.
+	 * Can be called more than once, and the longest matching path wins.
+	 */
+	public void mount(String path, File dir) {
+		config.mounts.put(path, dir);
+	}
+
+	/**
+	 * Serves a mount's `index.html` for any path inside it which doesn't match a file and has
+	 * no extension, so that client-side routes like `/users/42` survive a reload. Off by default.
+	 */
+	public void setSpaFallback(boolean spaFallback) {
+		config.spaFallback = spaFallback;
+	}
+
+	/**
+	 * Serves files out of an in-memory cache, with gzip and brotli variants
+	 * computed once at startup rather than on every request. Off by default.
+	 */
+	public void setCache(boolean cache) {
+		config.cache = cache;
+	}
+
+	/** Sets the maximum size of the in-memory cache, least-recently-used files get evicted first. */
+	public void setCacheMaxBytes(long cacheMaxBytes) {
+		config.cacheMaxBytes = cacheMaxBytes;
+	}
+
+	/**
+	 * Files at least this many bytes are sent from a memory-mapped file (with `Range` support),
+	 * so they never get copied through the heap or the in-memory cache. Disabled by default.
+	 */
+	public void setZeroCopyThreshold(long zeroCopyThreshold) {
+		config.zeroCopyThreshold = zeroCopyThreshold;
+	}
+
+	/**
+	 * Watches `dir` and tells connected browsers to reload when it changes. Pages
+	 * opt in with `<script src="/__livereload.js"></script>`. Off by default.
+	 */
+	public void setLiveReload(boolean liveReload) {
+		config.liveReload = liveReload;
+	}
+
+	/**
+	 * Adds strong content-hashed ETags and answers `If-None-Match` with 304 without reading
+	 * the file. Fingerprinted files like `app.3f9a1c.js` are marked `immutable` for a year,
+	 * everything else is marked `no-cache` so that it gets revalidated. Off by default.
+	 */
+	public void setCacheHeaders(boolean cacheHeaders) {
+		config.cacheHeaders = cacheHeaders;
+	}
+
+	/**
+	 * Records per-path request counts, bytes sent, cache hit ratio and latency percentiles,
+	 * serves them at `/__metrics` (Prometheus) and `/__metrics.json`, and prints a summary
+	 * table when the server stops. Off by default.
+	 */
+	public void setMetrics(boolean metrics) {
+		config.metrics = metrics;
+	}
+
+	private boolean background = false;
+
+	/**
+	 * Starts the server in the background and lets the build carry on, rather than
+	 * blocking until a key is pressed. The server stops at the end of the build,
+	 * or when a {@link StaticServerStopTask} runs. Off by default.
+	 */
+	public void setBackground(boolean background) {
+		this.background = background;
+	}
+
+	private boolean keepAlive = false;
+
+	/**
+	 * Keeps a background server running in the Gradle daemon after the build finishes,
+	 * so that later builds (e.g. `--continuous`) reuse it instead of starting Jetty again.
+	 * Implies `background`. Off by default.
+	 */
+	public void setKeepAlive(boolean keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+
+	/** Tuning for Jetty's thread pool and connector, the defaults are the same as `new Server(port)`. */
+	public static class Connector implements Serializable {
+		private static final long serialVersionUID = 2202667389741906417L;
+
+		/** Runs requests on virtual threads. */
+		public boolean virtualThreads = false;
+		/** Number of acceptor threads, -1 lets Jetty pick based on the number of cores. */
+		public int acceptors = -1;
+		/** Number of selector threads, -1 lets Jetty pick based on the number of cores. */
+		public int selectors = -1;
+		/** How long an idle connection stays open. */
+		public long idleTimeoutMs = 30_000;
+		/** Size of the buffer which response bodies are aggregated into before being written. */
+		public int outputBufferSize = 32 * 1024;
+		/** Accepts HTTP/2 over cleartext (h2c) as well as HTTP/1.1. */
+		public boolean h2c = false;
+	}
+
+	/** Configures Jetty's thread pool and connector. */
+	public void connector(Action<Connector> action) {
+		action.execute(config.connector);
 	}
 
 	/** Returns a stream of all of the running, non-virtual, non-loopback addresses. */
@@ -73,23 +191,23 @@ public class StaticServerTask extends DefaultTask {
 
 	@TaskAction
 	public void start() throws Exception {
-		Server server = new Server(port);
-
-		ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
-		context.setContextPath("/");
-		context.setResourceBase(dir.getAbsolutePath());
-		context.addServlet(DefaultServlet.class, "/");
-		server.setHandler(context);
-		server.start();
-
-		// if there are any alternative IPs, print those too
-		getLocalAddresses()
-				.forEach(addr -> System.out.println("    Serving at IP: " + addr.getHostAddress() + ":" + port));
+		if (background || keepAlive) {
+			getService().get().start(config, keepAlive);
+			printAddresses();
+			return;
+		}
+		StaticServer server = StaticServer.start(config);
+		printAddresses();
 
 		// wait for user input to stop
 		getInputChar("Press any key to stop.");
 		server.stop();
-		server.join();
+	}
+
+	private void printAddresses() throws SocketException {
+		// if there are any alternative IPs, print those too
+		getLocalAddresses()
+				.forEach(addr -> System.out.println("    Serving at IP: " + addr.getHostAddress() + ":" + config.port));
 	}
 
 	/** Returns an input after the given prompt. */
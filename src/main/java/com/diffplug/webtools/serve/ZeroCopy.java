@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import com.diffplug.common.swt.os.OS;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.HttpOutput;
+
+/**
+ * Sends a file (or a single byte range of it) without copying it through the heap.
+ * Jetty writes a memory-mapped buffer straight to the socket, except on Windows
+ * where a live mapping would stop the bundler from overwriting the file, so there
+ * we let Jetty pull from the {@link FileChannel} into its own direct buffers instead.
+ *
+ * A mapped file which is truncated while it is being sent crashes the JVM's copy out of
+ * the mapping (SIGBUS, surfacing as an {@link InternalError}), so files which are expected
+ * to change, e.g. with live reload, go through the channel too, and if a mapped file
+ * changes anyway the response is aborted.
+ */
+class ZeroCopy {
+	private ZeroCopy() {}
+
+	/** @param map false to never map the file, because it may be rewritten while it is sent */
+	static void send(HttpServletRequest req, HttpServletResponse resp, Path file, BasicFileAttributes attrs, boolean map) throws IOException {
+		long size = attrs.size();
+		resp.setHeader(HttpHeader.ACCEPT_RANGES.asString(), "bytes");
+
+		long start = 0;
+		long length = size;
+		String range = req.getHeader(HttpHeader.RANGE.asString());
+		if (range != null && ifRangeMatches(req, attrs)) {
+			long[] parsed = parseRange(range, size);
+			if (parsed == UNSATISFIABLE) {
+				resp.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				resp.setHeader(HttpHeader.CONTENT_RANGE.asString(), "bytes */" + size);
+				resp.setContentLength(0);
+				return;
+			} else if (parsed != null) {
+				start = parsed[0];
+				length = parsed[1] - parsed[0] + 1;
+				resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				resp.setHeader(HttpHeader.CONTENT_RANGE.asString(), "bytes " + parsed[0] + "-" + parsed[1] + "/" + size);
+			}
+		}
+		resp.setContentLengthLong(length);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ServletOutputStream output = resp.getOutputStream();
+			if (!(output instanceof HttpOutput)) {
+				// e.g. a HEAD request, where the servlet API wraps the response
+				Channels.newInputStream(new BoundedChannel(channel.position(start), length)).transferTo(output);
+			} else if (!map || OS.getNative().isWindows() || length > Integer.MAX_VALUE) {
+				((HttpOutput) output).sendContent(new BoundedChannel(channel.position(start), length));
+			} else {
+				try {
+					((HttpOutput) output).sendContent(channel.map(FileChannel.MapMode.READ_ONLY, start, length));
+				} catch (InternalError e) {
+					// the Content-Length has gone out, so all we can do is cut the response short
+					throw new IOException(file + " was truncated while it was being sent", e);
+				}
+			}
+		}
+	}
+
+	private static final long[] UNSATISFIABLE = new long[0];
+
+	/**
+	 * Parses a `Range` header into an inclusive `[first, last]` pair. Returns null
+	 * if the whole file should be sent instead, which is what we do for malformed
+	 * headers, invalid ranges such as `5-2`, and multiple ranges (all allowed by RFC 9110).
+	 */
+	static long[] parseRange(String header, long size) {
+		if (!header.startsWith("bytes=")) {
+			return null;
+		}
+		String spec = null;
+		for (String element : header.substring("bytes=".length()).split(",")) {
+			if (element.isBlank()) {
+				// empty list elements are allowed, e.g. `bytes=0-9,`
+				continue;
+			} else if (spec != null) {
+				return null;
+			}
+			spec = element;
+		}
+		int dash = spec == null ? -1 : spec.indexOf('-');
+		if (dash == -1) {
+			return null;
+		}
+		String firstStr = spec.substring(0, dash).trim();
+		String lastStr = spec.substring(dash + 1).trim();
+		if (!isDigits(firstStr) || !isDigits(lastStr) || (firstStr.isEmpty() && lastStr.isEmpty())) {
+			return null;
+		}
+		try {
+			long first, last;
+			if (firstStr.isEmpty()) {
+				// suffix range, e.g. `bytes=-500` is the final 500 bytes
+				long suffix = Long.parseLong(lastStr);
+				if (suffix == 0) {
+					return UNSATISFIABLE;
+				}
+				first = Math.max(0, size - suffix);
+				last = size - 1;
+			} else {
+				first = Long.parseLong(firstStr);
+				last = lastStr.isEmpty() ? Long.MAX_VALUE : Long.parseLong(lastStr);
+				if (last < first) {
+					return null;
+				}
+				last = Math.min(last, size - 1);
+			}
+			if (first >= size) {
+				return UNSATISFIABLE;
+			}
+			return new long[]{first, last};
+		} catch (NumberFormatException e) {
+			// too many digits for a long
+			return null;
+		}
+	}
+
+	/** True if the string is only ASCII digits, which `Long.parseLong` alone doesn't check, e.g. `+5`. */
+	private static boolean isDigits(String str) {
+		for (int i = 0; i < str.length(); ++i) {
+			char c = str.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** `If-Range` means "only send a range if the file hasn't changed, otherwise send all of it". */
+	private static boolean ifRangeMatches(HttpServletRequest req, BasicFileAttributes attrs) {
+		String ifRange = req.getHeader(HttpHeader.IF_RANGE.asString());
+		if (ifRange == null) {
+			return true;
+		} else if (ifRange.startsWith("\"")) {
+			// only a strong ETag can validate a range, which CacheHeadersFilter provides if it's enabled
+			return ifRange.equals(req.getAttribute(CacheHeadersFilter.ETAG_ATTRIBUTE));
+		}
+		try {
+			long date = req.getDateHeader(HttpHeader.IF_RANGE.asString());
+			return attrs.lastModifiedTime().toMillis() / 1000 <= date / 1000;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	/** Reads at most `remaining` bytes from the underlying channel. */
+	private static class BoundedChannel implements ReadableByteChannel {
+		private final FileChannel delegate;
+		private long remaining;
+
+		BoundedChannel(FileChannel delegate, long remaining) {
+			this.delegate = delegate;
+			this.remaining = remaining;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int limit = dst.limit();
+			if (dst.remaining() > remaining) {
+				dst.limit(dst.position() + (int) remaining);
+			}
+			try {
+				int read = delegate.read(dst);
+				if (read > 0) {
+					remaining -= read;
+				}
+				return read;
+			} finally {
+				dst.limit(limit);
+			}
+		}
+
+		@Override
+		public boolean isOpen() {
+			return delegate.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {
+			delegate.close();
+		}
+	}
+}
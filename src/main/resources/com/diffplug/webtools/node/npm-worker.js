@@ -0,0 +1,102 @@
+// Runs npm scripts for webtools' warm `npm_run` tasks, without booting npm for each one, see NodeWorker.java
+//
+// stdin, one JSON object per line:  {"id": 1, "script": "build", "env": {"NODE_ENV": "production"}}
+// stdout, tab-separated lines:      1\tout\t<line>   1\terr\t<line>   1\texit\t<code>
+//
+// Like `npm run`, it runs the `pre` and `post` scripts too, with `node_modules/.bin` on the PATH.
+'use strict';
+const { spawn } = require('child_process');
+const fs = require('fs');
+const path = require('path');
+const readline = require('readline');
+
+function send(id, kind, payload) {
+	process.stdout.write(id + '\t' + kind + '\t' + payload + '\n');
+}
+
+// longer lines are sent in pieces, so that a line without a newline can't pile up here or in Gradle, see NodeWorker.MAX_PAYLOAD_CHARS
+const MAX_PAYLOAD_CHARS = 16 * 1024;
+
+/** Sends whole pieces of the line, and returns the rest, which is the whole line if it is short enough. */
+function sendPieces(id, kind, line) {
+	while (line.length > MAX_PAYLOAD_CHARS) {
+		// never between the two halves of a surrogate pair
+		const end = /[\ud800-\udbff]/.test(line[MAX_PAYLOAD_CHARS - 1]) ? MAX_PAYLOAD_CHARS - 1 : MAX_PAYLOAD_CHARS;
+		send(id, kind, line.slice(0, end));
+		line = line.slice(end);
+	}
+	return line;
+}
+
+function forward(id, kind, readable) {
+	readable.setEncoding('utf8');
+	let pending = '';
+	readable.on('data', (chunk) => {
+		const text = pending + chunk;
+		// a `\r\n` may be split across chunks, so a trailing `\r` waits for the next one
+		const cr = text.endsWith('\r');
+		const lines = (cr ? text.slice(0, -1) : text).split(/\r?\n|\r/);
+		const last = lines.pop();
+		lines.forEach((line) => send(id, kind, sendPieces(id, kind, line)));
+		pending = sendPieces(id, kind, last);
+		if (cr) {
+			pending += '\r';
+		}
+	});
+	readable.on('end', () => {
+		if (pending.length > 0) {
+			send(id, kind, pending.endsWith('\r') ? pending.slice(0, -1) : pending);
+		}
+	});
+}
+
+function run(id, script, env) {
+	// read every time, since package.json may have changed since the last invocation
+	const pkg = JSON.parse(fs.readFileSync('package.json', 'utf8'));
+	const scripts = pkg.scripts || {};
+	if (!(script in scripts)) {
+		send(id, 'err', 'Missing script: "' + script + '"');
+		send(id, 'exit', 1);
+		return;
+	}
+	const steps = ['pre' + script, script, 'post' + script].filter((name) => name in scripts);
+	const childEnv = Object.assign({}, process.env, env, {
+		npm_package_name: pkg.name || '',
+		npm_package_version: pkg.version || '',
+		npm_package_json: path.resolve('package.json'),
+	});
+	const pathKey = Object.keys(childEnv).find((key) => key.toUpperCase() === 'PATH') || 'PATH';
+	childEnv[pathKey] = path.resolve('node_modules', '.bin') + path.delimiter + (childEnv[pathKey] || '');
+
+	const next = (i) => {
+		if (i === steps.length) {
+			send(id, 'exit', 0);
+			return;
+		}
+		childEnv.npm_lifecycle_event = steps[i];
+		childEnv.npm_lifecycle_script = scripts[steps[i]];
+		let done = false;
+		const finish = (code) => {
+			if (!done) {
+				done = true;
+				code === 0 ? next(i + 1) : send(id, 'exit', code === null ? 1 : code);
+			}
+		};
+		const child = spawn(scripts[steps[i]], { shell: true, env: childEnv, stdio: ['ignore', 'pipe', 'pipe'] });
+		forward(id, 'out', child.stdout);
+		forward(id, 'err', child.stderr);
+		child.on('error', (e) => {
+			send(id, 'err', String(e));
+			finish(1);
+		});
+		child.on('close', finish);
+	};
+	next(0);
+}
+
+readline.createInterface({ input: process.stdin, crlfDelay: Infinity }).on('line', (line) => {
+	const request = JSON.parse(line);
+	run(request.id, request.script, request.env);
+});
+// Gradle closes stdin when the build service closes, or if the daemon dies
+process.stdin.on('end', () => process.exit(0));
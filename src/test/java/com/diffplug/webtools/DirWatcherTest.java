@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DirWatcherTest {
+	@TempDir
+	Path dir;
+
+	private final BlockingQueue<Set<Path>> batches = new LinkedBlockingQueue<>();
+
+	private Set<Path> nextBatch() throws InterruptedException {
+		var batch = batches.poll(10, TimeUnit.SECONDS);
+		assertNotNull(batch, "no batch arrived");
+		return batch;
+	}
+
+	@Test
+	void burstOfChangesIsOneBatch() throws Exception {
+		try (var watcher = new DirWatcher(dir, batches::add)) {
+			for (int i = 0; i < 50; ++i) {
+				Files.writeString(dir.resolve("file" + i + ".js"), "// " + i);
+			}
+			var batch = nextBatch();
+			for (int i = 0; i < 50; ++i) {
+				assertTrue(batch.contains(dir.resolve("file" + i + ".js")), "file" + i);
+			}
+			assertNull(batches.poll(1, TimeUnit.SECONDS), "the burst should be a single batch");
+		}
+	}
+
+	@Test
+	void filesInNewDirectoriesAreReported() throws Exception {
+		try (var watcher = new DirWatcher(dir, batches::add)) {
+			var sub = Files.createDirectories(dir.resolve("a/b"));
+			Files.writeString(sub.resolve("deep.css"), "body {}");
+			// the file may be written before `b` is registered, which the walk of the new directories picks up
+			assertTrue(waitFor(sub.resolve("deep.css"), Set.of()).contains(sub.resolve("deep.css")));
+		}
+	}
+
+	@Test
+	void rootWhichDoesNotExistYetIsWatchedOnceItAppears() throws Exception {
+		var root = dir.resolve("dist");
+		try (var watcher = new DirWatcher(root, batches::add)) {
+			Files.createDirectories(root);
+			assertTrue(nextBatch().contains(root));
+			Files.writeString(root.resolve("index.html"), "<p>hi</p>");
+			assertTrue(waitFor(root.resolve("index.html"), Set.of()).contains(root.resolve("index.html")));
+		}
+	}
+
+	@Test
+	void rootWhichIsRecreatedIsWatchedAgain() throws Exception {
+		try (var watcher = new DirWatcher(dir, batches::add)) {
+			Files.delete(dir);
+			assertTrue(nextBatch().contains(dir));
+			Files.createDirectories(dir);
+			Files.writeString(dir.resolve("index.html"), "<p>hi</p>");
+			assertTrue(waitFor(dir.resolve("index.html"), Set.of()).contains(dir.resolve("index.html")));
+		}
+	}
+
+	/** Returns the first batch which contains the path, or which contains the root, meaning that everything changed. */
+	private Set<Path> waitFor(Path path, Set<Path> batch) throws InterruptedException {
+		while (!batch.contains(path)) {
+			batch = nextBatch();
+			if (batch.contains(path.getParent())) {
+				return Set.of(path);
+			}
+		}
+		return batch;
+	}
+}
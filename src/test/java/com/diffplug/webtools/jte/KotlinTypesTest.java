@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.jte;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class KotlinTypesTest {
+	private static void assertKotlin(String kotlin, String java) {
+		assertEquals(kotlin, KotlinTypes.fromJava(java), java);
+	}
+
+	@Test
+	void primitivesAndBuiltins() {
+		assertKotlin("Int", "int");
+		assertKotlin("Boolean", "boolean");
+		assertKotlin("Int", "Integer");
+		assertKotlin("String", "String");
+		assertKotlin("String", "java.lang.String");
+		assertKotlin("Any", "Object");
+		assertKotlin("java.time.LocalDate", "java.time.LocalDate");
+	}
+
+	@Test
+	void arraysAndVarargs() {
+		assertKotlin("IntArray", "int[]");
+		assertKotlin("Array<String>", "String[]");
+		assertKotlin("Array<IntArray>", "int[][]");
+		assertKotlin("Array<String>", "String...");
+		assertKotlin("IntArray", "int...");
+	}
+
+	@Test
+	void genericsFollowKotlinsVariance() {
+		assertKotlin("List<String>", "java.util.List<String>");
+		assertKotlin("Map<String, List<Int>>", "java.util.Map<String, ? extends java.util.List<Integer>>");
+		assertKotlin("MutableList<in Int>", "java.util.List<? super Integer>");
+		assertKotlin("List<*>", "java.util.List<?>");
+		assertKotlin("Comparable<String>", "Comparable<? super String>");
+	}
+
+	@Test
+	void nullabilityAnnotations() {
+		assertKotlin("String?", "@Nullable String");
+		assertKotlin("String?", "@javax.annotation.CheckForNull String");
+		assertKotlin("String", "@NotNull String");
+		assertKotlin("String", "@org.jetbrains.annotations.NotNull String");
+	}
+
+	@Test
+	void unparseableTypesPassThrough() {
+		assertKotlin("List<String", " List<String ");
+		assertKotlin("a b", "a b");
+	}
+}
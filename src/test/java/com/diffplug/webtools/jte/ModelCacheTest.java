@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.jte;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import gg.jte.ContentType;
+import gg.jte.TemplateConfig;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ModelCacheTest {
+	@TempDir
+	File tmp;
+
+	private ModelCache cache() {
+		return new ModelCache(tmp, new TemplateConfig(ContentType.Html, "gg.jte.generated"), false);
+	}
+
+	private List<Path> entries() throws IOException {
+		try (Stream<Path> paths = Files.walk(tmp.toPath())) {
+			return paths.filter(path -> path.toString().endsWith(".kt")).collect(Collectors.toList());
+		}
+	}
+
+	private static void age(Path path, Duration age) throws IOException {
+		Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(age)));
+	}
+
+	@Test
+	void keyCoversPathAndHeaderButNotBody() {
+		var cache = cache();
+		String key = cache.key("pages/Home.jte", "@param String title\n<h1>${title}</h1>\n");
+		assertEquals(key, cache.key("pages/Home.jte", "@param String title\n<h2>changed body</h2>\n"));
+		assertFalse(key.equals(cache.key("pages/Other.jte", "@param String title\n<h1>${title}</h1>\n")));
+		assertFalse(key.equals(cache.key("pages/Home.jte", "@param int title\n<h1>${title}</h1>\n")));
+	}
+
+	@Test
+	void putThenGet() throws IOException {
+		var cache = cache();
+		assertNull(cache.get("abcdef"));
+		cache.put("abcdef", "model");
+		assertEquals("model", cache.get("abcdef"));
+	}
+
+	@Test
+	void cleanupDeletesOnlyUnusedEntries() throws IOException {
+		var cache = cache();
+		cache.put("aaaaaa", "unused");
+		cache.put("bbbbbb", "used");
+		cache.put("cccccc", "recent");
+		for (Path entry : entries()) {
+			if (!entry.toString().contains("cccc")) {
+				age(entry, ModelCache.MAX_UNUSED.plusDays(1));
+			}
+		}
+		// a hit marks the entry as used again
+		assertEquals("used", cache.get("bbbbbb"));
+		cache.cleanup();
+		assertNull(cache.get("aaaaaa"));
+		assertEquals("used", cache.get("bbbbbb"));
+		assertEquals("recent", cache.get("cccccc"));
+		assertEquals(2, entries().size());
+	}
+
+	@Test
+	void cleanupRunsAtMostOnceADay() throws IOException {
+		var cache = cache();
+		cache.cleanup();
+		cache.put("aaaaaa", "unused");
+		age(entries().get(0), ModelCache.MAX_UNUSED.plusDays(1));
+		cache.cleanup();
+		assertEquals(1, entries().size());
+		age(tmp.toPath().resolve(ModelCache.CLEANUP_MARKER), Duration.ofDays(2));
+		cache.cleanup();
+		assertTrue(entries().isEmpty());
+	}
+}
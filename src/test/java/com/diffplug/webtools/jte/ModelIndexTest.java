@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.jte;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ModelIndexTest {
+	@TempDir
+	File tmp;
+
+	private static Map<String, ModelIndex.Entry> models(int count) {
+		var index = new TreeMap<String, ModelIndex.Entry>();
+		for (int i = 0; i < count; ++i) {
+			index.put("pages/Page" + i + "Model.kt", new ModelIndex.Entry("hash" + i, "pages/Page" + i + ".jte", List.of()));
+		}
+		return index;
+	}
+
+	/** The number of registrations in each `registerN` function, in order. */
+	private static List<Integer> chunks(String registry) {
+		var chunks = new ArrayList<Integer>();
+		for (String line : registry.lines().toList()) {
+			if (line.startsWith("\tprivate fun register")) {
+				assertEquals("\tprivate fun register" + chunks.size() + "(map: HashMap<String, Entry>) {", line);
+				chunks.add(0);
+			} else if (line.startsWith("\t\tmap[")) {
+				chunks.set(chunks.size() - 1, chunks.get(chunks.size() - 1) + 1);
+			}
+		}
+		return chunks;
+	}
+
+	private static long calls(String registry) {
+		return registry.lines().filter(line -> line.matches("\t\tregister[0-9]+\\(map\\)")).count();
+	}
+
+	@Test
+	void registryIsSplitIntoChunks() {
+		assertEquals(List.of(), chunks(ModelIndex.registry("gen", models(0))));
+		assertEquals(List.of(1), chunks(ModelIndex.registry("gen", models(1))));
+		assertEquals(List.of(256), chunks(ModelIndex.registry("gen", models(256))));
+		assertEquals(List.of(256, 1), chunks(ModelIndex.registry("gen", models(257))));
+		assertEquals(List.of(256, 256, 88), chunks(ModelIndex.registry("gen", models(600))));
+		assertEquals(3, calls(ModelIndex.registry("gen", models(600))));
+		assertEquals(0, calls(ModelIndex.registry("gen", models(0))));
+	}
+
+	@Test
+	void registryMapsTemplatesToModels() {
+		String registry = ModelIndex.registry("gen", Map.of(
+				"pages/HomeModel.kt", new ModelIndex.Entry("a", "pages/Home.jte", List.of())));
+		assertTrue(registry.startsWith("package gen\n"));
+		assertTrue(registry.contains("\t\tmap[\"pages/Home.jte\"] = Entry(pages.Home.PARAM_NAMES) { pages.Home.create(it) }\n"), registry);
+	}
+
+	@Test
+	void readWhatWasWritten() throws IOException {
+		var index = new TreeMap<String, ModelIndex.Entry>();
+		index.put("pages/HomeModel.kt", new ModelIndex.Entry("a", "pages/Home.jte", List.of("layout.page", "tag.link")));
+		index.put("tag/LinkModel.kt", new ModelIndex.Entry("b", "tag/link.jte", List.of()));
+		File file = new File(tmp, ModelIndex.FILENAME);
+		ModelIndex.write(file, index);
+		var read = ModelIndex.read(file);
+		assertEquals(index.keySet(), read.keySet());
+		for (var path : index.keySet()) {
+			assertEquals(index.get(path).hash, read.get(path).hash);
+			assertEquals(index.get(path).templatePath, read.get(path).templatePath);
+			assertEquals(index.get(path).calls, read.get(path).calls);
+		}
+		assertTrue(ModelIndex.read(new File(tmp, "missing")).isEmpty());
+	}
+
+	@Test
+	void unchangedContentKeepsItsMtime() throws IOException {
+		File file = new File(tmp, "gen/Model.kt");
+		ModelIndex.writeIfChanged(file, "content");
+		FileTime old = FileTime.fromMillis(1_000_000);
+		Files.setLastModifiedTime(file.toPath(), old);
+		ModelIndex.writeIfChanged(file, "content");
+		assertEquals(old, Files.getLastModifiedTime(file.toPath()));
+		ModelIndex.writeIfChanged(file, "changed");
+		assertFalse(old.equals(Files.getLastModifiedTime(file.toPath())));
+		assertEquals("changed", Files.readString(file.toPath()));
+	}
+}
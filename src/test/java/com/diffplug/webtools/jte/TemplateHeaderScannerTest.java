@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.jte;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import gg.jte.compiler.TemplateParserVisitorAdapter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TemplateHeaderScannerTest {
+	/** The header as `import:` and `param:` lines in the order they were visited, or null if the scanner gave up. */
+	private static List<String> header(String template) {
+		var visited = new ArrayList<String>();
+		boolean scanned = TemplateHeaderScanner.scan(template, new TemplateParserVisitorAdapter() {
+			@Override
+			public void onImport(String importClass) {
+				visited.add("import:" + importClass);
+			}
+
+			@Override
+			public void onParam(String parameter) {
+				visited.add("param:" + parameter);
+			}
+		});
+		if (!scanned) {
+			assertTrue(visited.isEmpty(), "visited a header it then gave up on");
+			return null;
+		}
+		return visited;
+	}
+
+	@Test
+	void importsAndParamsInOrder() {
+		assertEquals(List.of("import:java.util.List", "param:List<String> names", "import:foo.Bar", "param:Bar bar = null"),
+				header("@import java.util.List\n@param List<String> names\n\n@import foo.Bar\n@param Bar bar = null\n<p>${names}</p>\n"));
+		assertEquals(List.of("param:String title"), header("<%-- a comment --%>\n@param String title\nbody\n"));
+		assertEquals(List.of(), header("<p>no header</p>\n"));
+		assertEquals(List.of(), header(""));
+	}
+
+	@Test
+	void headerLengthStopsAtTheBody() {
+		String header = "@param String title\n";
+		assertEquals(header.length(), TemplateHeaderScanner.headerLength(header + "<h1>${title}</h1>\n"));
+		assertEquals(header.length(), TemplateHeaderScanner.headerLength(header));
+	}
+
+	@Test
+	void unusualHeadersAreLeftToTheParser() {
+		// a header line which jte still picks up after a comment in the body
+		assertEquals(null, header("@param String a\n<p></p><%-- x --%>\n@param String b\n"));
+		// html comments, an unterminated header line, a tab after the keyword, and special characters
+		assertEquals(null, header("<!-- x -->\n@param String a\n"));
+		assertEquals(null, header("@param String a"));
+		assertEquals(null, header("@param\tString a\n"));
+		assertEquals(null, header("@param @Nullable String a\n"));
+		assertEquals(null, header("<%-- unterminated\n@param String a\n"));
+		assertEquals(-1, TemplateHeaderScanner.headerLength("<!-- x -->\n"));
+	}
+
+	@Test
+	void templateCalls() {
+		assertEquals(List.of("layout.page", "tag.link"), TemplateHeaderScanner.templateCalls(
+				"@template.layout.page(content = @`\n@template.tag.link(url = a)\n@template.layout.page()`)\n"));
+		assertEquals(List.of("b"), TemplateHeaderScanner.templateCalls("<%-- @template.a() --%>@template.b()"));
+		assertFalse(TemplateHeaderScanner.templateCalls("@template.a").contains("a"));
+		assertEquals(List.of(), TemplateHeaderScanner.templateCalls("<%-- @template.a() "));
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.node;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NodeModulesStoreTest {
+	@TempDir
+	Path tmp;
+
+	@Test
+	void rootLifecycleScriptsInTheOrderNpmCiRunsThem() {
+		assertEquals(List.of("preinstall", "install", "postinstall", "prepare"), NodeModulesStore.rootLifecycleScripts(
+				"{\"name\": \"app\", \"scripts\": {\"prepare\": \"husky\", \"build\": \"vite build\", \"postinstall\": \"patch-package\",\n"
+						+ "\"install\": \"node-gyp rebuild\", \"preinstall\": \"echo \\\"}\\\"\"}, \"dependencies\": {\"a\": \"1\"}}"));
+		assertEquals(List.of(), NodeModulesStore.rootLifecycleScripts("{\"scripts\": {\"build\": \"vite build\", \"test\": \"vitest\"}}"));
+		assertEquals(List.of(), NodeModulesStore.rootLifecycleScripts("{\"name\": \"app\"}"));
+		assertEquals(List.of(), NodeModulesStore.rootLifecycleScripts("{}"));
+	}
+
+	@Test
+	void onlyTheTopLevelScriptsCount() {
+		assertEquals(List.of(), NodeModulesStore.rootLifecycleScripts(
+				"{\"workspaces\": [{\"scripts\": {\"postinstall\": \"x\"}}], \"config\": {\"scripts\": {\"prepare\": \"x\"}}, \"private\": true, \"n\": -1.5e3, \"x\": null}"));
+		assertEquals(List.of("postinstall"), NodeModulesStore.rootLifecycleScripts("{\"scripts\": {\"post\\u0069nstall\": \"x\"}}"));
+	}
+
+	@Test
+	void malformedJsonThrows() {
+		for (String json : List.of("", "{", "{\"scripts\": {\"install\": \"x\"}", "{\"scripts\" {}}", "{} {}", "[]", "{\"a\": \"\\u12\"}")) {
+			assertThrows(IllegalArgumentException.class, () -> NodeModulesStore.rootLifecycleScripts(json), json);
+		}
+	}
+
+	private Path write(String relative, String content) throws IOException {
+		Path file = tmp.resolve(relative);
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, content);
+		return file;
+	}
+
+	private static long fileCount(Path dir) throws IOException {
+		try (Stream<Path> paths = Files.walk(dir)) {
+			return paths.filter(Files::isRegularFile).count();
+		}
+	}
+
+	@Test
+	void restoreWhatWasSaved() throws Exception {
+		var store = new NodeModulesStore(tmp.resolve("store").toFile());
+		String key = NodeModulesStore.key("{\"lockfileVersion\": 3}".getBytes(), "20.0.0", "provided");
+		File nodeModules = tmp.resolve("project/node_modules").toFile();
+		assertFalse(store.restore(key, nodeModules));
+
+		write("project/node_modules/a/index.js", "a");
+		write("project/node_modules/b/lib/index.js", "b");
+		write("project/node_modules/.cache/tool/entry", "build-time cache");
+		store.save(key, nodeModules);
+
+		write("project/node_modules/stale.js", "from another lockfile");
+		assertTrue(store.restore(key, nodeModules));
+		assertEquals("a", Files.readString(nodeModules.toPath().resolve("a/index.js")));
+		assertEquals("b", Files.readString(nodeModules.toPath().resolve("b/lib/index.js")));
+		assertEquals(2, fileCount(nodeModules.toPath()));
+	}
+
+	@Test
+	void restoreFailsIfTheStoreLostFiles() throws Exception {
+		var store = new NodeModulesStore(tmp.resolve("store").toFile());
+		String key = NodeModulesStore.key("{}".getBytes(), "20.0.0", "provided");
+		File nodeModules = tmp.resolve("project/node_modules").toFile();
+		write("project/node_modules/a/index.js", "a");
+		write("project/node_modules/b/index.js", "b");
+		store.save(key, nodeModules);
+
+		Path stored = tmp.resolve("store").resolve(key).resolve("b/index.js");
+		Files.delete(stored);
+		assertFalse(store.restore(key, nodeModules));
+		assertFalse(nodeModules.exists());
+		// the next save replaces the broken tree
+		write("project/node_modules/a/index.js", "a");
+		write("project/node_modules/b/index.js", "b");
+		store.save(key, nodeModules);
+		assertTrue(store.restore(key, nodeModules));
+		assertEquals(2, fileCount(nodeModules.toPath()));
+	}
+
+	@Test
+	void keyCoversLockfileNodeAndNpm() throws Exception {
+		String key = NodeModulesStore.key("lock".getBytes(), "20.0.0", "10.0.0");
+		assertEquals(key, NodeModulesStore.key("lock".getBytes(), "20.0.0", "10.0.0"));
+		assertFalse(key.equals(NodeModulesStore.key("lock2".getBytes(), "20.0.0", "10.0.0")));
+		assertFalse(key.equals(NodeModulesStore.key("lock".getBytes(), "22.0.0", "10.0.0")));
+		assertFalse(key.equals(NodeModulesStore.key("lock".getBytes(), "20.0.0", "11.0.0")));
+	}
+}
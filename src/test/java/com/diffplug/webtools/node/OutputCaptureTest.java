@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.node;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OutputCaptureTest {
+	@TempDir
+	Path tmp;
+
+	@Test
+	void readLinesSplitsOnEveryKindOfNewline() throws IOException {
+		assertEquals(List.of("a", "b", "", "c", "d", "e"), readLines("a\nb\n\nc\r\nd\re"));
+		assertEquals(List.of("a"), readLines("a\n"));
+		assertEquals(List.of("", ""), readLines("\r\n\r\n"));
+		assertEquals(List.of(), readLines(""));
+	}
+
+	@Test
+	void readLinesPassesLongLinesOnInPieces() throws IOException {
+		String longLine = "x".repeat(OutputCapture.MAX_LINE_CHARS * 2 + 5);
+		assertEquals(List.of("x".repeat(OutputCapture.MAX_LINE_CHARS), "x".repeat(OutputCapture.MAX_LINE_CHARS), "xxxxx", "next"),
+				readLines(longLine + "\nnext"));
+		// a line of exactly the maximum doesn't get an empty piece for its newline
+		assertEquals(List.of("x".repeat(OutputCapture.MAX_LINE_CHARS), "next"),
+				readLines("x".repeat(OutputCapture.MAX_LINE_CHARS) + "\nnext"));
+	}
+
+	@Test
+	void readLinesNeverSplitsASurrogatePair() throws IOException {
+		String emoji = "😀";
+		String line = "x".repeat(OutputCapture.MAX_LINE_CHARS - 1) + emoji + "y";
+		assertEquals(List.of("x".repeat(OutputCapture.MAX_LINE_CHARS - 1) + emoji, "y"), readLines(line));
+	}
+
+	@Test
+	void tailsKeepTheLastLinesAndCountTheDropped() throws IOException {
+		var logFile = tmp.resolve("logs/npm.log").toFile();
+		var builder = new StringBuilder();
+		try (var capture = new OutputCapture(logFile)) {
+			String line = "y".repeat(1024);
+			for (int i = 0; i < 40; ++i) {
+				capture.stdout(i + line);
+			}
+			capture.stderr("failed");
+			capture.appendTails(builder);
+		}
+		String tails = builder.toString();
+		// each line is a little over 1K, so only 31 of them fit in 32K
+		assertTrue(tails.startsWith("... 9 earlier lines, see the full log\n9" + "y"), tails.substring(0, 50));
+		assertTrue(tails.endsWith("\n39" + "y".repeat(1024) + "\nfailed\n"));
+		assertTrue(tails.length() <= 2 * OutputCapture.TAIL_CHARS + 200);
+
+		List<String> log = Files.readAllLines(logFile.toPath(), StandardCharsets.UTF_8);
+		assertEquals(41, log.size());
+		assertEquals("0" + "y".repeat(1024), log.get(0));
+		assertEquals("failed", log.get(40));
+	}
+
+	@Test
+	void tailsTruncateAnOverlongLineToItsEnd() throws IOException {
+		var builder = new StringBuilder();
+		try (var capture = new OutputCapture(tmp.resolve("npm.log").toFile())) {
+			capture.stdout("earlier");
+			capture.stdout("a".repeat(10) + "b".repeat(OutputCapture.TAIL_CHARS));
+			capture.appendTails(builder);
+		}
+		assertEquals("... 1 earlier lines, see the full log\n" + "b".repeat(OutputCapture.TAIL_CHARS) + "\n", builder.toString());
+	}
+
+	private static List<String> readLines(String content) throws IOException {
+		var lines = new ArrayList<String>();
+		OutputCapture.readLines(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), lines::add);
+		return lines;
+	}
+}
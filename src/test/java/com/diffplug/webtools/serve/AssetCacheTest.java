@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AssetCacheTest {
+	@TempDir
+	Path dir;
+
+	/** Not compressible, so that each entry weighs exactly its size. */
+	private final AssetCache cache = new AssetCache(8 * 1000, name -> "application/octet-stream");
+
+	private Path file(String name, int size) throws IOException {
+		return Files.write(dir.resolve(name), new byte[size]);
+	}
+
+	private AssetCache.Asset get(Path file) throws IOException {
+		return cache.get(file, Files.readAttributes(file, BasicFileAttributes.class));
+	}
+
+	private long[] hitsAndMisses() {
+		long[] result = {cache.hits.sum(), cache.misses.sum()};
+		cache.hits.reset();
+		cache.misses.reset();
+		return result;
+	}
+
+	@Test
+	void evictsTheLeastRecentlyUsed() throws IOException {
+		var a = file("a", 1000);
+		var b = file("b", 1000);
+		get(a);
+		get(b);
+		for (int i = 0; i < 6; ++i) {
+			get(file("filler" + i, 1000));
+		}
+		// touching `a` makes `b` the eldest, so the next file pushes `b` out
+		get(a);
+		get(file("overflow", 1000));
+		hitsAndMisses();
+
+		get(a);
+		assertArrayEquals(new long[]{1, 0}, hitsAndMisses());
+		get(b);
+		assertArrayEquals(new long[]{0, 1}, hitsAndMisses());
+	}
+
+	@Test
+	void neverCachesLargeFiles() throws IOException {
+		var large = file("large", 1001);
+		assertNull(get(large));
+		assertNull(get(large));
+		assertArrayEquals(new long[]{0, 2}, hitsAndMisses());
+	}
+
+	@Test
+	void reloadsModifiedFiles() throws IOException {
+		var a = file("a", 10);
+		assertEquals(10, get(a).size);
+		Files.write(a, new byte[20]);
+		Files.setLastModifiedTime(a, FileTime.fromMillis(Files.getLastModifiedTime(a).toMillis() + 2000));
+		assertEquals(20, get(a).size);
+		assertArrayEquals(new long[]{0, 2}, hitsAndMisses());
+	}
+
+	@Test
+	void invalidatesChangedFilesAndDirectories() throws IOException {
+		Files.createDirectories(dir.resolve("sub"));
+		var a = file("a", 10);
+		var inSub = file("sub/b", 10);
+		var untouched = file("c", 10);
+		get(a);
+		get(inSub);
+		get(untouched);
+		hitsAndMisses();
+
+		cache.invalidate(Set.of(a, dir.resolve("sub")));
+		get(a);
+		get(inSub);
+		assertArrayEquals(new long[]{0, 2}, hitsAndMisses());
+		assertNotNull(get(untouched));
+		assertArrayEquals(new long[]{1, 0}, hitsAndMisses());
+	}
+}
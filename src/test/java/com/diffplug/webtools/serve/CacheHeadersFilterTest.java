@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import jakarta.servlet.DispatcherType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Map;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CacheHeadersFilterTest {
+	@TempDir
+	Path dir;
+
+	private Server server;
+	private LocalConnector connector;
+
+	@BeforeEach
+	void start() throws Exception {
+		Files.writeString(dir.resolve("app.js"), "console.log('hello');\n".repeat(100));
+		Files.writeString(dir.resolve("tiny.js"), "1");
+		server = new Server();
+		connector = new LocalConnector(server);
+		server.addConnector(connector);
+		var context = new ServletContextHandler();
+		var index = new RouteIndex(Map.of("/", dir), false);
+		var cache = new AssetCache(1024 * 1024, context.getMimeTypes()::getMimeByExtension);
+		context.addServlet(new ServletHolder(new AssetServlet(index, cache, -1, true)), "/");
+		context.addFilter(new FilterHolder(new CacheHeadersFilter(index, true)), "/*", EnumSet.of(DispatcherType.REQUEST));
+		server.setHandler(context);
+		server.start();
+	}
+
+	@AfterEach
+	void stop() throws Exception {
+		server.stop();
+	}
+
+	private HttpTester.Response get(String path, String... headers) throws Exception {
+		var request = new StringBuilder("GET " + path + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n");
+		for (String header : headers) {
+			request.append(header).append("\r\n");
+		}
+		return HttpTester.parseResponse(connector.getResponse(request.append("\r\n").toString()));
+	}
+
+	@Test
+	void notModifiedHasTheSameHeadersAsTheVariant() throws Exception {
+		var ok = get("/app.js", "Accept-Encoding: gzip");
+		assertEquals(200, ok.getStatus());
+		assertEquals("gzip", ok.get("Content-Encoding"));
+		assertTrue(ok.get("ETag").endsWith("-gzip\""), ok.get("ETag"));
+		assertEquals("Accept-Encoding", ok.get("Vary"));
+
+		var notModified = get("/app.js", "Accept-Encoding: gzip", "If-None-Match: " + ok.get("ETag"));
+		assertEquals(304, notModified.getStatus());
+		assertEquals(ok.get("ETag"), notModified.get("ETag"));
+		assertEquals(ok.get("Vary"), notModified.get("Vary"));
+		assertEquals(ok.get("Cache-Control"), notModified.get("Cache-Control"));
+		assertNull(notModified.get("Content-Encoding"));
+		assertEquals(0, notModified.getContentBytes() == null ? 0 : notModified.getContentBytes().length);
+	}
+
+	@Test
+	void anotherVariantIsSentInFull() throws Exception {
+		var gzip = get("/app.js", "Accept-Encoding: gzip");
+		// the client has the gzip variant, but now only accepts identity
+		var identity = get("/app.js", "Accept-Encoding: identity", "If-None-Match: " + gzip.get("ETag"));
+		assertEquals(200, identity.getStatus());
+		assertNull(identity.get("Content-Encoding"));
+		assertEquals(gzip.get("ETag").replace("-gzip\"", "\""), identity.get("ETag"));
+		assertEquals("Accept-Encoding", identity.get("Vary"));
+	}
+
+	@Test
+	void filesWithoutVariantsHaveNoVary() throws Exception {
+		var ok = get("/tiny.js", "Accept-Encoding: gzip");
+		assertEquals(200, ok.getStatus());
+		assertNull(ok.get("Vary"));
+		var notModified = get("/tiny.js", "Accept-Encoding: gzip", "If-None-Match: " + ok.get("ETag"));
+		assertEquals(304, notModified.getStatus());
+		assertEquals(ok.get("ETag"), notModified.get("ETag"));
+		assertNull(notModified.get("Vary"));
+	}
+
+	@Test
+	void fingerprints() {
+		assertTrue(CacheHeadersFilter.isFingerprinted("app.3f9a1c.js"));
+		assertTrue(CacheHeadersFilter.isFingerprinted("index-BxK3z9Qa.css"));
+		assertFalse(CacheHeadersFilter.isFingerprinted("report-20231225.js"));
+		assertFalse(CacheHeadersFilter.isFingerprinted("facade.js"));
+		assertFalse(CacheHeadersFilter.isFingerprinted("logo.3f9a1c.png"));
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RouteIndexTest {
+	@TempDir
+	Path tmp;
+
+	private Path write(String relative) throws IOException {
+		Path file = tmp.resolve(relative);
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, relative);
+		return file;
+	}
+
+	private static void assertServes(Path expected, RouteIndex index, String path) {
+		RouteIndex.Route route = index.resolve(path);
+		assertTrue(route != null && !route.redirectToDir, path);
+		assertEquals(expected, route.file, path);
+	}
+
+	@Test
+	void filesDirectoriesAndMissingPaths() throws IOException {
+		Path index = write("site/index.html");
+		Path page = write("site/blog/post.html");
+		Path blogIndex = write("site/blog/index.html");
+		RouteIndex routes = new RouteIndex(Map.of("/", tmp.resolve("site")), false);
+		assertServes(index, routes, "/");
+		assertServes(index, routes, "/index.html");
+		assertServes(page, routes, "/blog/post.html");
+		assertServes(blogIndex, routes, "/blog/");
+		assertTrue(routes.resolve("/blog").redirectToDir);
+		assertNull(routes.resolve("/missing.html"));
+		assertNull(routes.resolve("/users/42"));
+	}
+
+	@Test
+	void spaFallbackServesIndexForRoutesButNotForAssets() throws IOException {
+		Path index = write("site/index.html");
+		RouteIndex routes = new RouteIndex(Map.of("/", tmp.resolve("site")), true);
+		assertServes(index, routes, "/users/42");
+		assertServes(index, routes, "/users/42/");
+		assertNull(routes.resolve("/missing.js"));
+		assertNull(routes.resolve("/assets/logo.png"));
+	}
+
+	@Test
+	void longestMountWins() throws IOException {
+		write("site/index.html");
+		write("site/docs/shadowed.html");
+		Path docsIndex = write("docs/index.html");
+		Path guide = write("docs/guide.html");
+		RouteIndex routes = new RouteIndex(Map.of("/", tmp.resolve("site"), "/docs", tmp.resolve("docs")), true);
+		assertServes(guide, routes, "/docs/guide.html");
+		assertServes(docsIndex, routes, "/docs/");
+		assertNull(routes.resolve("/docs/shadowed.html"));
+		// each mount falls back to its own index.html
+		assertServes(docsIndex, routes, "/docs/some/route");
+		assertServes(tmp.resolve("site/index.html"), routes, "/some/route");
+		// `/docsets` isn't inside `/docs`
+		assertServes(tmp.resolve("site/index.html"), routes, "/docsets");
+	}
+
+	@Test
+	void updateAddsAndRemovesFiles() throws IOException {
+		write("site/index.html");
+		RouteIndex routes = new RouteIndex(Map.of("/", tmp.resolve("site")), false);
+		RouteIndex.Mount mount = routes.mounts().get(0);
+		assertNull(routes.resolve("/new/page.html"));
+
+		Path page = write("site/new/page.html");
+		routes.update(mount, Set.of(tmp.resolve("site/new")));
+		assertServes(page, routes, "/new/page.html");
+		assertTrue(routes.resolve("/new").redirectToDir);
+
+		Files.delete(page);
+		Files.delete(tmp.resolve("site/new"));
+		routes.update(mount, Set.of(tmp.resolve("site/new")));
+		assertNull(routes.resolve("/new/page.html"));
+		assertNull(routes.resolve("/new"));
+	}
+
+	@Test
+	void updateOfAShorterMountKeepsTheLongerMountsRoutes() throws IOException {
+		write("site/index.html");
+		write("site/docs/shadowed.html");
+		Path guide = write("docs/guide.html");
+		RouteIndex routes = new RouteIndex(Map.of("/", tmp.resolve("site"), "/docs", tmp.resolve("docs")), false);
+		RouteIndex.Mount root = routes.mounts().stream().filter(m -> m.prefix.isEmpty()).findFirst().get();
+		routes.update(root, Set.of(tmp.resolve("site/docs"), tmp.resolve("site/docs/shadowed.html")));
+		assertServes(guide, routes, "/docs/guide.html");
+		assertNull(routes.resolve("/docs/shadowed.html"));
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ServerMetricsTest {
+	private static ServerMetrics metrics() {
+		ServerMetrics metrics = new ServerMetrics(null);
+		metrics.record("/index.html", 200, 1_000, 100);
+		metrics.record("/index.html", 200, 3_000, 100);
+		metrics.record("/app.js", 304, 500, 0);
+		return metrics;
+	}
+
+	@Test
+	void everySummaryHasSumAndCount() {
+		List<String> lines = metrics().prometheus().lines().toList();
+		assertTrue(lines.contains("static_server_latency_seconds_sum 0.0045"), String.join("\n", lines));
+		assertTrue(lines.contains("static_server_latency_seconds_count 3"));
+		assertTrue(lines.contains("static_server_path_latency_seconds_sum{path=\"/index.html\"} 0.004"));
+		assertTrue(lines.contains("static_server_path_latency_seconds_count{path=\"/index.html\"} 2"));
+		assertTrue(lines.contains("static_server_path_latency_seconds_sum{path=\"/app.js\"} 5.0E-4"));
+		assertTrue(lines.contains("static_server_path_latency_seconds_count{path=\"/app.js\"} 1"));
+		assertTrue(lines.contains("static_server_path_latency_seconds{path=\"/app.js\",quantile=\"0.5\"} 5.0E-4"));
+	}
+
+	@Test
+	void everySampleBelongsToItsDeclaredFamily() {
+		String family = null;
+		for (String line : metrics().prometheus().lines().toList()) {
+			if (line.startsWith("# TYPE ")) {
+				family = line.split(" ")[2];
+			} else {
+				String name = line.split("[{ ]")[0];
+				assertTrue(name.equals(family) || name.equals(family + "_sum") || name.equals(family + "_count"), line);
+			}
+		}
+	}
+
+	@Test
+	void json() {
+		String json = metrics().json();
+		assertTrue(json.startsWith("{\"requests\":3,\"bytes\":200,\"notModified\":1,"), json);
+		assertEquals(2, json.split("\"requests\"").length - 2);
+	}
+}
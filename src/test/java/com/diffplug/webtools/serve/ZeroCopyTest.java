@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.webtools.serve;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+class ZeroCopyTest {
+	private static void assertRange(long first, long last, String header, long size) {
+		assertArrayEquals(new long[]{first, last}, ZeroCopy.parseRange(header, size), header);
+	}
+
+	private static void assertUnsatisfiable(String header, long size) {
+		assertEquals(0, ZeroCopy.parseRange(header, size).length, header);
+	}
+
+	@Test
+	void singleRanges() {
+		assertRange(0, 9, "bytes=0-9", 100);
+		assertRange(90, 99, "bytes=90-", 100);
+		assertRange(95, 99, "bytes=-5", 100);
+		assertRange(0, 99, "bytes=-500", 100);
+		assertRange(50, 99, "bytes=50-5000", 100);
+		assertRange(0, 9, "bytes= 0 - 9 ", 100);
+	}
+
+	@Test
+	void unsatisfiable() {
+		assertUnsatisfiable("bytes=100-", 100);
+		assertUnsatisfiable("bytes=100-200", 100);
+		assertUnsatisfiable("bytes=-0", 100);
+		assertUnsatisfiable("bytes=0-", 0);
+	}
+
+	@Test
+	void multipleRangesSendTheWholeFile() {
+		assertNull(ZeroCopy.parseRange("bytes=0-9,20-29", 100));
+		assertNull(ZeroCopy.parseRange("bytes=0-5, 3-10", 100));
+		assertNull(ZeroCopy.parseRange("bytes=-5,0-1", 100));
+	}
+
+	@Test
+	void emptyListElementsAreSkipped() {
+		assertRange(0, 9, "bytes=0-9,", 100);
+		assertRange(0, 9, "bytes=, 0-9", 100);
+	}
+
+	@Test
+	void malformedOrInvalidRangesSendTheWholeFile() {
+		for (String header : new String[]{"items=0-9", "BYTES=0-9", "bytes=", "bytes=-", "bytes=abc", "bytes=+1-5", "bytes=1--5", "bytes=5-2", "bytes=100-50", "bytes=0-99999999999999999999"}) {
+			assertNull(ZeroCopy.parseRange(header, 100), header);
+		}
+	}
+}